@@ -0,0 +1,125 @@
+package com.youssgm3o8.smoothtp;
+
+import cn.nukkit.level.Location;
+import cn.nukkit.utils.Config;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One server tick of the shared ticker with many animations in flight.
+ * The plugin runs headless: every animation is a real {@link TransmissionProcess} started
+ * through the teleport listener, and a tick is one pass of the {@link AnimationTicker}
+ * scheduled on a {@link VirtualScheduler}. The animations are spread over their timeline,
+ * and a player whose animation ended teleports back right away, so the number of
+ * animations in flight stays the same.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ConcurrentAnimationsBenchmark {
+
+    @Param({"1", "10", "100", "1000"})
+    public int animations;
+
+    @Param({"ABSOLUTE", "DELTA"})
+    public String encoding;
+
+    private VirtualScheduler scheduler;
+    private Main plugin;
+    private ByteCountingSink network;
+    private SimulatedPlayer[] players;
+    private Location[] homes;
+    private Location[] destinations;
+    private boolean[] away;
+
+    /**
+     * Wire size of the ticks played during an iteration
+     */
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Traffic {
+        public long bytes;
+        public long packets;
+    }
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        Config config = new Config(Config.YAML);
+        config.set("performance.entity-encoding", encoding);
+        // Every teleport gets a full animation
+        config.set("limits.max-active-animations", animations + 1);
+        config.set("limits.max-packets-per-tick", (animations + 1) * 2);
+        SmoothTpSettings settings = HeadlessPlugin.settings(config);
+
+        scheduler = new VirtualScheduler(20.0);
+        plugin = HeadlessPlugin.start(settings, scheduler);
+        network = new ByteCountingSink();
+        players = new SimulatedPlayer[animations];
+        homes = new Location[animations];
+        destinations = new Location[animations];
+        away = new boolean[animations];
+
+        int length = settings.getUpDuration() + settings.getFadeInDuration() + settings.getStayDuration()
+                + settings.getFadeOutDuration() + settings.getDownDuration() + settings.getDownStayDuration();
+        for (int i = 0; i < animations; i++) {
+            double distance = 50.0 + i % 20 * 100.0;
+            homes[i] = new Location(0.5, 64.0, 0.5, 0.0, 0.0, null);
+            destinations[i] = new Location(distance + 0.5, 70.0, distance / 2 + 0.5, 90.0, 0.0, null);
+            players[i] = new SimulatedPlayer(plugin, i + 1, homes[i], 10, animations - 1, 0, network);
+
+            int player = i;
+            scheduler.schedule(1 + i * 7 % length, () -> teleport(player));
+        }
+
+        // Play until every animation has started, so they are spread over the timeline
+        while (scheduler.getPendingTasks() > 0) {
+            scheduler.tick();
+        }
+        network.reset();
+    }
+
+    @Benchmark
+    public void tick(Traffic traffic) {
+        long packets = network.getPackets();
+        long bytes = network.getBytes();
+
+        scheduler.tick();
+        restartEnded();
+
+        traffic.packets += network.getPackets() - packets;
+        traffic.bytes += network.getBytes() - bytes;
+    }
+
+    /**
+     * Teleports the players whose animation ended back where they came from
+     */
+    private void restartEnded() {
+        AnimationRegistry registry = plugin.getAnimations();
+        for (int i = 0; i < animations; i++) {
+            if (!registry.isTeleporting(players[i].getUniqueId())) {
+                teleport(i);
+            }
+        }
+    }
+
+    private void teleport(int player) {
+        players[player].teleport(away[player] ? homes[player] : destinations[player]);
+        away[player] = !away[player];
+    }
+}
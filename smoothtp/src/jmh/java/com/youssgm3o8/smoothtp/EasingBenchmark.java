@@ -0,0 +1,78 @@
+package com.youssgm3o8.smoothtp;
+
+import cn.nukkit.level.Location;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-tick interpolation: reading a frame of a precomputed track, and the
+ * cost of building one movement from a shared easing table.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EasingBenchmark {
+
+    @Param({"LINEAR", "CUBIC", "EXPO", "BEZIER(0.25,0.1,0.25,1)"})
+    public String easing;
+
+    private String curve;
+    private CameraTrack track;
+    private Location from;
+    private Location to;
+    private int frame;
+
+    @Setup
+    public void setup() {
+        curve = Easing.resolve(easing);
+        track = Tracks.plan(500.0, curve);
+        from = new Location(0.5, 164.0, 0.5, 0.0, 90.0, null);
+        to = new Location(500.5, 164.0, 250.5, 90.0, 90.0, null);
+    }
+
+    /**
+     * What a running animation does each tick to find its camera position
+     */
+    @Benchmark
+    public void playFrame(Blackhole blackhole) {
+        int index = frame++ % track.length();
+        blackhole.consume(track.getX(index));
+        blackhole.consume(track.getY(index));
+        blackhole.consume(track.getZ(index));
+        blackhole.consume(track.getYaw(index));
+        blackhole.consume(track.getPitch(index));
+    }
+
+    /**
+     * Looking up the shared progress table, done once per movement when an animation starts
+     */
+    @Benchmark
+    public Easing.Table sharedTable() {
+        return Easing.table(curve, Tracks.STAY_DURATION);
+    }
+
+    /**
+     * Interpolating a whole pan from the shared table
+     */
+    @Benchmark
+    public CameraTrack move() {
+        CameraTrack pan = new CameraTrack(Tracks.STAY_DURATION);
+        pan.move(from, to, Easing.table(curve, Tracks.STAY_DURATION));
+        return pan;
+    }
+}
@@ -0,0 +1,75 @@
+package com.youssgm3o8.smoothtp;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building and encoding the packets of one animation frame, with the bytes
+ * each frame puts on the wire reported next to the time.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FrameEncodingBenchmark {
+
+    @Param({"ABSOLUTE", "DELTA"})
+    public String encoding;
+
+    private CameraTrack track;
+    private FramePackets packets;
+    private final ByteCountingSink sink = new ByteCountingSink();
+    private int frame;
+
+    /**
+     * Wire size of the frames played during an iteration
+     */
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Traffic {
+        public long bytes;
+        public long packets;
+    }
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        track = Tracks.plan(500.0, Easing.CUBIC);
+        packets = new FramePackets(-1001L, 1L, encoding.equals("DELTA"), 20, 8.0);
+        sink.reset();
+        frame = 0;
+    }
+
+    /**
+     * One frame of a moving stage: the entity move and the camera move, both encoded
+     */
+    @Benchmark
+    public void playFrame(Traffic traffic) {
+        int index = frame++ % track.length();
+        double x = track.getX(index);
+        double y = track.getY(index);
+        double z = track.getZ(index);
+        float yaw = track.getYaw(index);
+        float pitch = track.getPitch(index);
+
+        long before = sink.getBytes();
+        sink.send(packets.entityMove(x, y - 10000.0, z, yaw, pitch));
+        sink.send(packets.cameraMove(x, y, z, yaw, pitch));
+        traffic.bytes += sink.getBytes() - before;
+        traffic.packets += 2;
+    }
+}
@@ -0,0 +1,291 @@
+package com.youssgm3o8.smoothtp;
+
+import cn.nukkit.level.Location;
+import cn.nukkit.utils.Config;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Replays scripted teleport workloads on a headless, deterministic server and reports
+ * what SmoothTP costs per tick, so scaling changes can be compared offline.
+ * <p>
+ * A Nukkit server can't run in-process without its network and worlds, so the simulation
+ * starts the real plugin headless: {@link Main}'s teleport listener, the admission budget,
+ * {@link TransmissionProcess}, {@link VirtualEntity}, {@link PacketBatch} and the
+ * {@link AnimationTicker} all run as on a server, with players seen through {@link SimulatedPlayer}
+ * and the ticker scheduled on a {@link VirtualScheduler}. Every packet is encoded and counted.
+ * There are no levels, so chunk prewarming and cross-world teleports are not simulated.
+ * <p>
+ * Usage: {@code mvn -Pbenchmarks test-compile exec:exec@simulate -Dsim.args="--workload burst --players 300"}
+ * <ul>
+ *     <li>{@code --workload burst|steady|quits|retargets}: everyone at once, a steady stream, a burst where some
+ *     quit mid-animation, or a burst where some are teleported again mid-animation</li>
+ *     <li>{@code --players N}: players teleporting, 300 by default</li>
+ *     <li>{@code --rate N}: teleports started per tick by the steady workload, 5 by default</li>
+ *     <li>{@code --quit-fraction F}: share of players quitting during the quits workload, 0.3 by default</li>
+ *     <li>{@code --retarget-fraction F}: share of players teleported again during the retargets workload, 0.3 by default</li>
+ *     <li>{@code --viewers N}: players seeing each teleporting player, 10 by default</li>
+ *     <li>{@code --ping N}: highest player ping in milliseconds, pings are spread up to it, 0 by default</li>
+ *     <li>{@code --distance N}: longest teleport in blocks, 1000 by default</li>
+ *     <li>{@code --tps N}: server TPS reported to the plugin, 20 by default</li>
+ *     <li>{@code --set key=value}: overrides a config value, can be repeated</li>
+ *     <li>{@code --seed N}, {@code --warmup N}, {@code --csv file}: randomness, warmup runs and a per-tick CSV</li>
+ * </ul>
+ */
+public final class LoadSimulation {
+    // Stop a run that never drains, whatever the workload
+    private static final int MAX_TICKS = 72000;
+
+    private final SmoothTpSettings settings;
+    private final String workload;
+    private final int players;
+    private final int rate;
+    private final double quitFraction;
+    private final double retargetFraction;
+    private final int viewers;
+    private final int ping;
+    private final double distance;
+    private final long seed;
+
+    private final VirtualScheduler scheduler;
+    private final Main plugin;
+    private final ByteCountingSink network = new ByteCountingSink();
+    private int requested;
+    private int quits;
+
+    private LoadSimulation(SmoothTpSettings settings, String workload, int players, int rate, double quitFraction,
+                           double retargetFraction, int viewers, int ping, double distance, double tps, long seed) {
+        this.settings = settings;
+        this.workload = workload;
+        this.players = players;
+        this.rate = rate;
+        this.quitFraction = quitFraction;
+        this.retargetFraction = retargetFraction;
+        this.viewers = viewers;
+        this.ping = ping;
+        this.distance = distance;
+        this.seed = seed;
+        this.scheduler = new VirtualScheduler(tps);
+        this.plugin = HeadlessPlugin.start(settings, scheduler);
+    }
+
+    public static void main(String[] args) throws IOException {
+        Config config = new Config(Config.YAML);
+        String workload = "burst";
+        int players = 300;
+        int rate = 5;
+        double quitFraction = 0.3;
+        double retargetFraction = 0.3;
+        int viewers = 10;
+        int ping = 0;
+        double distance = 1000.0;
+        double tps = 20.0;
+        long seed = 42L;
+        int warmup = 1;
+        String csv = null;
+
+        for (int i = 0; i < args.length; i++) {
+            String value = i + 1 < args.length ? args[i + 1] : "";
+            switch (args[i]) {
+                case "--workload": workload = value.toLowerCase(Locale.ROOT); i++; break;
+                case "--players": players = Integer.parseInt(value); i++; break;
+                case "--rate": rate = Integer.parseInt(value); i++; break;
+                case "--quit-fraction": quitFraction = Double.parseDouble(value); i++; break;
+                case "--retarget-fraction": retargetFraction = Double.parseDouble(value); i++; break;
+                case "--viewers": viewers = Integer.parseInt(value); i++; break;
+                case "--ping": ping = Integer.parseInt(value); i++; break;
+                case "--distance": distance = Double.parseDouble(value); i++; break;
+                case "--tps": tps = Double.parseDouble(value); i++; break;
+                case "--seed": seed = Long.parseLong(value); i++; break;
+                case "--warmup": warmup = Integer.parseInt(value); i++; break;
+                case "--csv": csv = value; i++; break;
+                case "--set": {
+                    int split = value.indexOf('=');
+                    if (split <= 0) {
+                        throw new IllegalArgumentException("Expected key=value after --set, got " + value);
+                    }
+                    config.set(value.substring(0, split), parseValue(value.substring(split + 1)));
+                    i++;
+                    break;
+                }
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+        if (!workload.equals("burst") && !workload.equals("steady") && !workload.equals("quits")
+                && !workload.equals("retargets")) {
+            throw new IllegalArgumentException("Unknown workload: " + workload
+                    + ", expected burst, steady, quits or retargets");
+        }
+
+        SmoothTpSettings settings = HeadlessPlugin.settings(config);
+
+        // Same workload every time, the warmup runs only let the JIT settle before measuring
+        List<long[]> samples = null;
+        for (int run = 0; run <= warmup; run++) {
+            LoadSimulation simulation = new LoadSimulation(settings, workload, players, rate, quitFraction,
+                    retargetFraction, viewers, ping, distance, tps, seed);
+            samples = simulation.run();
+            if (run == warmup) {
+                simulation.report(samples);
+            }
+        }
+
+        if (csv != null) {
+            writeCsv(csv, samples);
+            System.out.println("Per-tick samples written to " + csv);
+        }
+    }
+
+    private static Object parseValue(String value) {
+        if (value.equalsIgnoreCase("true") || value.equalsIgnoreCase("false")) {
+            return Boolean.parseBoolean(value);
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            // Not an integer
+        }
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            return value;
+        }
+    }
+
+    /**
+     * Plays the workload until every teleport is over
+     * @return One sample per tick: packets, bytes, queue depth, running animations and main-thread nanos
+     */
+    private List<long[]> run() {
+        Random random = new Random(seed);
+        AnimationTicker ticker = plugin.getAnimationTicker();
+
+        // Rough length of a full animation, to spread the quits and retargets over it
+        int animationTicks = settings.getUpDuration() + settings.getFadeInDuration() + settings.getStayDuration()
+                + settings.getFadeOutDuration() + settings.getDownDuration() + settings.getDownStayDuration();
+
+        for (int i = 0; i < players; i++) {
+            SimulatedPlayer player = new SimulatedPlayer(plugin, i + 1, randomLocation(random), viewers,
+                    players - 1, ping > 0 ? random.nextInt(ping + 1) : 0, network);
+            Location destination = randomLocation(random);
+
+            int at = workload.equals("steady") ? 1 + i / Math.max(1, rate) : 1;
+            scheduler.schedule(at, () -> teleport(player, destination));
+
+            int during = at + 1 + random.nextInt(Math.max(1, animationTicks));
+            if (workload.equals("quits") && random.nextDouble() < quitFraction) {
+                scheduler.schedule(during, () -> quit(player));
+            }
+            if (workload.equals("retargets") && random.nextDouble() < retargetFraction) {
+                Location retarget = randomLocation(random);
+                scheduler.schedule(during, () -> teleport(player, retarget));
+            }
+        }
+
+        List<long[]> samples = new ArrayList<>();
+        while (scheduler.getCurrentTick() < MAX_TICKS && (scheduler.getPendingTasks() > 0 || ticker.size() > 0)) {
+            long packetsBefore = network.getPackets();
+            long bytesBefore = network.getBytes();
+            long start = System.nanoTime();
+            scheduler.tick();
+            long nanos = System.nanoTime() - start;
+            samples.add(new long[] {
+                    network.getPackets() - packetsBefore,
+                    network.getBytes() - bytesBefore,
+                    scheduler.getQueueDepth(),
+                    ticker.size(),
+                    nanos
+            });
+        }
+        plugin.getAnimationTicker().stop();
+        return samples;
+    }
+
+    private Location randomLocation(Random random) {
+        return new Location(random.nextDouble() * distance, 64.0 + random.nextInt(64), random.nextDouble() * distance,
+                random.nextFloat() * 360.0f, 0.0, null);
+    }
+
+    /**
+     * Teleports a player, for example with a command, which the plugin's listener sees first
+     */
+    private void teleport(SimulatedPlayer player, Location destination) {
+        requested++;
+        player.teleport(destination);
+    }
+
+    private void quit(SimulatedPlayer player) {
+        if (player.isOnline() && plugin.getAnimations().isTeleporting(player.getUniqueId())) {
+            quits++;
+        }
+        player.quit();
+    }
+
+    private void report(List<long[]> samples) {
+        System.out.printf(Locale.ROOT, "Workload %s: %d players, %d viewers each, %s entity encoding%s%n",
+                workload, players, viewers, settings.isDeltaEncoding() ? "delta" : "absolute",
+                settings.isCameraOnly() ? ", camera only" : "");
+        TeleportStats stats = plugin.getTeleportStats();
+        System.out.printf(Locale.ROOT, "Teleports: %d requested, %d full, %d shortened, %d instant over budget, "
+                        + "%d too short to animate, %d retargets (%d coalesced), %d quit mid-animation%n",
+                requested, stats.getFullAdmissions(), stats.getShortenedAdmissions(), stats.getInstantAdmissions(),
+                stats.getSkippedTeleports(), stats.getRetargets(), stats.getCoalescedTeleports(), quits);
+        System.out.printf(Locale.ROOT, "Animations: %d started, %d completed, %d failed%n",
+                stats.getAnimationsStarted(), stats.getAnimationsCompleted(), stats.getAnimationsFailed());
+        System.out.printf(Locale.ROOT, "Ticks: %d, %d packets, %d bytes%n",
+                samples.size(), network.getPackets(), network.getBytes());
+        System.out.printf(Locale.ROOT, "%-16s %12s %12s %12s %12s%n", "", "mean", "p50", "p99", "max");
+        String[] names = {"packets/tick", "bytes/tick", "queue depth", "animations", "main thread us"};
+        for (int column = 0; column < names.length; column++) {
+            long[] values = new long[samples.size()];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = samples.get(i)[column];
+            }
+            double divisor = column == 4 ? 1000.0 : 1.0;
+            System.out.printf(Locale.ROOT, "%-16s %12.1f %12.1f %12.1f %12.1f%n", names[column],
+                    mean(values) / divisor, percentile(values, 0.50) / divisor,
+                    percentile(values, 0.99) / divisor, percentile(values, 1.0) / divisor);
+        }
+    }
+
+    private static double mean(long[] values) {
+        if (values.length == 0) {
+            return 0.0;
+        }
+        double sum = 0.0;
+        for (long value : values) {
+            sum += value;
+        }
+        return sum / values.length;
+    }
+
+    private static double percentile(long[] values, double percentile) {
+        if (values.length == 0) {
+            return 0.0;
+        }
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+
+    private static void writeCsv(String file, List<long[]> samples) throws IOException {
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(Paths.get(file), StandardCharsets.UTF_8))) {
+            out.println("tick,packets,bytes,queue_depth,animations,main_thread_nanos");
+            for (int i = 0; i < samples.size(); i++) {
+                long[] sample = samples.get(i);
+                out.println((i + 1) + "," + sample[0] + "," + sample[1] + "," + sample[2] + "," + sample[3] + "," + sample[4]);
+            }
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.youssgm3o8.smoothtp;
+
+import cn.nukkit.level.Location;
+import cn.nukkit.utils.Config;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Everything sent to a player for one whole teleport, from the teleport listener to the
+ * cleanup, with absolute and with delta encoded entity movement. The plugin runs headless
+ * and every packet of the real {@link TransmissionProcess} is encoded, so the reported
+ * {@code bytes} and {@code packets} are the totals of a single teleport.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TeleportBytesBenchmark {
+
+    @Param({"ABSOLUTE", "DELTA"})
+    public String encoding;
+
+    @Param({"50", "500", "5000"})
+    public double distance;
+
+    private VirtualScheduler scheduler;
+    private Main plugin;
+    private ByteCountingSink network;
+    private SimulatedPlayer player;
+    private Location home;
+    private Location destination;
+    private boolean away;
+
+    /**
+     * Wire size of the last teleport. Every teleport of a trial sends the same packets,
+     * so the counters hold the totals of one teleport rather than a running sum.
+     */
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class PerTeleport {
+        public long bytes;
+        public long packets;
+    }
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Config config = new Config(Config.YAML);
+        config.set("performance.entity-encoding", encoding);
+        // Count packets one by one rather than as batches
+        config.set("performance.batch-packets", false);
+
+        scheduler = new VirtualScheduler(20.0);
+        plugin = HeadlessPlugin.start(HeadlessPlugin.settings(config), scheduler);
+        network = new ByteCountingSink();
+        home = new Location(0.5, 64.0, 0.5, 0.0, 0.0, null);
+        destination = new Location(distance + 0.5, 70.0, distance / 2 + 0.5, 90.0, 0.0, null);
+        // Nobody else in view, only the teleporting player's own packets are counted
+        player = new SimulatedPlayer(plugin, 1, home, 0, 0, 0, network);
+    }
+
+    @Benchmark
+    public void teleport(PerTeleport perTeleport) {
+        network.reset();
+        player.teleport(away ? home : destination);
+        away = !away;
+        while (plugin.getAnimations().isTeleporting(player.getUniqueId())) {
+            scheduler.tick();
+        }
+
+        perTeleport.bytes = network.getBytes();
+        perTeleport.packets = network.getPackets();
+    }
+}
@@ -0,0 +1,69 @@
+package com.youssgm3o8.smoothtp;
+
+import cn.nukkit.level.Location;
+import cn.nukkit.utils.Config;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The timeline setup done when a teleport starts, on the plugin running headless:
+ * the teleport listener admitting the teleport, the {@link TransmissionProcess}
+ * planning its whole camera track, and the camera entity being spawned.
+ * Each teleport is cancelled right away and dropped by the next ticker pass,
+ * so every operation starts from the same state.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TimelineBenchmark {
+
+    @Param({"50", "500", "5000"})
+    public double distance;
+
+    private VirtualScheduler scheduler;
+    private Main plugin;
+    private SimulatedPlayer player;
+    private Location destination;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        scheduler = new VirtualScheduler(20.0);
+        plugin = HeadlessPlugin.start(HeadlessPlugin.settings(new Config(Config.YAML)), scheduler);
+        player = new SimulatedPlayer(plugin, 1, new Location(0.5, 64.0, 0.5, 0.0, 0.0, null), 10, 99, 0,
+                new ByteCountingSink());
+        destination = new Location(distance + 0.5, 70.0, distance / 2 + 0.5, 90.0, 0.0, null);
+    }
+
+    /**
+     * Starts a teleport through the listener, then cancels it like a player quitting
+     */
+    @Benchmark
+    public void startTeleport() {
+        player.teleport(destination);
+        plugin.getAnimations().cancel(player.getUniqueId());
+        scheduler.tick();
+    }
+
+    /**
+     * Plans a camera track on its own, the largest part of starting a teleport
+     */
+    @Benchmark
+    public CameraTrack planTrack() {
+        return Tracks.plan(distance, Easing.CUBIC);
+    }
+}
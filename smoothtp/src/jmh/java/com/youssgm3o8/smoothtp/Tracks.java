@@ -0,0 +1,43 @@
+package com.youssgm3o8.smoothtp;
+
+import cn.nukkit.level.Location;
+
+/**
+ * Camera tracks laid out like the default config, shared by the benchmarks.
+ */
+final class Tracks {
+    static final int UP_DURATION = 40;
+    static final int FADE_IN_DURATION = 20;
+    static final int STAY_DURATION = 20;
+    static final int FADE_OUT_DURATION = 40;
+    static final int DOWN_DURATION = 40;
+    static final int DOWN_STAY_DURATION = 20;
+    static final double UP_OFFSET = 100.0;
+
+    private Tracks() {
+    }
+
+    /**
+     * Plans the track of a same-level teleport over the given distance
+     * @param distance The horizontal distance covered
+     * @param easing The easing curve
+     * @return The track a TransmissionProcess would play
+     */
+    static CameraTrack plan(double distance, String easing) {
+        Location start = new Location(0.5, 64.0, 0.5, 0.0, 0.0, null);
+        Location destination = new Location(distance + 0.5, 70.0, distance / 2 + 0.5, 90.0, 0.0, null);
+        return CameraTrack.plan(start, up(start), up(destination), destination, easing,
+                UP_DURATION, FADE_IN_DURATION, STAY_DURATION, FADE_OUT_DURATION, DOWN_DURATION, DOWN_STAY_DURATION,
+                false);
+    }
+
+    /**
+     * @return The location the camera looks down from above a location
+     */
+    static Location up(Location location) {
+        Location up = location.clone();
+        up.y += UP_OFFSET;
+        up.pitch = 90;
+        return up;
+    }
+}
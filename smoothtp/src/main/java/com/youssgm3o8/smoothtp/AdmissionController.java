@@ -0,0 +1,74 @@
+package com.youssgm3o8.smoothtp;
+
+/**
+ * Decides how a new teleport is animated based on a server-wide budget.
+ * When too many animations are running, or their packets or the server's TPS
+ * are over budget, new teleports are shortened or made instant instead.
+ */
+public class AdmissionController {
+
+    /**
+     * How a teleport is animated
+     */
+    public enum Decision {
+        FULL,
+        SHORTENED,
+        INSTANT
+    }
+
+    private final Main plugin;
+
+    /**
+     * Creates a controller enforcing the budget of the current settings
+     * @param plugin The plugin instance
+     */
+    public AdmissionController(Main plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * Decides how the next teleport of a single player is animated and records the decision
+     * @return The decision for the new teleport
+     */
+    public Decision admit() {
+        return admit(1);
+    }
+
+    /**
+     * Decides how the next teleport is animated and records the decision
+     * @param players The number of players animated by the teleport, every member of a group
+     * @return The decision for the new teleport
+     */
+    public Decision admit(int players) {
+        Decision decision = decide(plugin.getSettings(), plugin.getAnimations().getActivePlayers(), players,
+                plugin.getAnimationScheduler().getTicksPerSecond());
+        plugin.getTeleportStats().recordAdmission(decision);
+        return decision;
+    }
+
+    /**
+     * Applies the budget of a settings snapshot, without recording anything
+     * @param settings The settings holding the budget
+     * @param active The number of players currently animating
+     * @param players The number of players the new teleport animates
+     * @param tps The server's current ticks per second
+     * @return The decision for a new teleport
+     */
+    static Decision decide(SmoothTpSettings settings, int active, int players, double tps) {
+        // Hard cap, nothing more can be animated
+        if (active + players > settings.getMaxActiveAnimations()) {
+            return Decision.INSTANT;
+        }
+
+        // Every animating player receives a camera move, plus an entity move unless camera-only
+        int packetsPerFrame = settings.isCameraOnly() ? 1 : 2;
+        boolean overBudget = (active + players) * packetsPerFrame > settings.getMaxPacketsPerTick();
+        boolean lagging = tps < settings.getMinTps();
+
+        if (!overBudget && !lagging) {
+            return Decision.FULL;
+        }
+        return settings.isShortenWhenOverloaded() ? Decision.SHORTENED : Decision.INSTANT;
+    }
+
+}
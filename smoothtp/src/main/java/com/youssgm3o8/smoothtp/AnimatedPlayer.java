@@ -0,0 +1,109 @@
+package com.youssgm3o8.smoothtp;
+
+import cn.nukkit.Player;
+import cn.nukkit.level.Location;
+import cn.nukkit.network.protocol.DataPacket;
+
+import java.util.UUID;
+
+/**
+ * The player side of a teleport animation: who is animated and where their packets go.
+ * The plugin wraps Nukkit players with {@link #of(Player)}, while the load simulation and
+ * benchmarks provide their own players so the real animations run without a server.
+ */
+public interface AnimatedPlayer {
+
+    /**
+     * Wraps a Nukkit player
+     * @param player The player to animate
+     * @return The player as seen by the animations
+     */
+    static AnimatedPlayer of(Player player) {
+        return new NukkitPlayer(player);
+    }
+
+    /**
+     * @return The runtime entity ID of the player
+     */
+    long getId();
+
+    /**
+     * @return The unique ID of the player
+     */
+    UUID getUniqueId();
+
+    /**
+     * @return The name of the player
+     */
+    String getName();
+
+    /**
+     * @return Where the player currently is
+     */
+    Location getLocation();
+
+    /**
+     * @return true while the player is connected
+     */
+    boolean isOnline();
+
+    /**
+     * @return The latency of the player's connection, in milliseconds
+     */
+    int getPing();
+
+    /**
+     * Sends a packet to the player
+     * @param packet The packet to send
+     */
+    void dataPacket(DataPacket packet);
+
+    /**
+     * Sends packets to the player as a single batch, compressed and encrypted once
+     * @param packets The packets to send, in order
+     */
+    void batchPackets(DataPacket[] packets);
+
+    /**
+     * Sends a packet to the players that currently see this one
+     * @param packet The packet to send
+     * @return The number of players the packet was sent to
+     */
+    int broadcastToViewers(DataPacket packet);
+
+    /**
+     * @return The number of players online besides this one
+     */
+    int getOtherPlayers();
+
+    /**
+     * Teleports the player, which calls the teleport event like any other teleport
+     * @param to Where to teleport the player
+     * @return false if the teleport was cancelled
+     */
+    boolean teleport(Location to);
+
+    /**
+     * Makes the player immune to fall damage for a while, so landing from the camera doesn't hurt
+     * @param ticks How long the immunity lasts
+     */
+    void protectFromFall(int ticks);
+
+    /**
+     * Shows a title to the player
+     */
+    void sendTitle(String title, String subtitle, int fadeIn, int stay, int fadeOut);
+
+    /**
+     * Sends a chat message to the player
+     * @param message The message
+     */
+    void sendMessage(String message);
+
+    /**
+     * Calls the {@link SmoothTeleportCompleteEvent} for a teleport of this player
+     * @param destination Where the player was teleported to
+     * @param result How the teleport ended
+     */
+    void callCompleteEvent(Location destination, TeleportResult result);
+}
@@ -0,0 +1,30 @@
+package com.youssgm3o8.smoothtp;
+
+import cn.nukkit.level.Level;
+
+import java.util.UUID;
+
+/**
+ * A running animation stepped once per tick by the {@link AnimationTicker}.
+ */
+public interface Animation {
+
+    /**
+     * Steps the animation by one tick
+     * @return true while the animation still needs ticking
+     */
+    boolean tick();
+
+    /**
+     * Stops animating a player right away, releasing the camera and anything sent to the client.
+     * An animation left without players stops entirely and returns false from its next tick.
+     * @param playerId The UUID of the player leaving the animation
+     */
+    void cancel(UUID playerId);
+
+    /**
+     * @param level A level
+     * @return true if the animation starts or ends in the level
+     */
+    boolean involves(Level level);
+}
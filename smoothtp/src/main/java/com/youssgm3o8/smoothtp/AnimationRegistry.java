@@ -0,0 +1,168 @@
+package com.youssgm3o8.smoothtp;
+
+import cn.nukkit.level.Level;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps track of the players SmoothTP is currently teleporting.
+ * Lookups are safe from any thread, animations are only started and stopped on the main thread.
+ * Every animation is released when its player leaves, its level unloads or the plugin is disabled,
+ * so nothing keeps running for a player that is gone.
+ */
+public class AnimationRegistry {
+    private final Main plugin;
+    // Running animation of each animated player
+    private final Map<UUID, Animation> animations = new ConcurrentHashMap<>();
+    // Players being teleported instantly, which must not start an animation meanwhile
+    private final Set<UUID> reserved = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Creates an empty registry
+     * @param plugin The plugin instance
+     */
+    public AnimationRegistry(Main plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * Registers the animation of a player
+     * @param playerId The UUID of the animated player
+     * @param animation The animation driving the player's camera
+     */
+    public void register(UUID playerId, Animation animation) {
+        animations.put(playerId, animation);
+        if (plugin.isDebug()) {
+            plugin.getLogger().info("Added player " + playerId + " to processing list");
+        }
+    }
+
+    /**
+     * Forgets the animation of a player, unless another animation has replaced it
+     * @param playerId The UUID of the player
+     * @param animation The animation that finished
+     */
+    public void unregister(UUID playerId, Animation animation) {
+        if (animations.remove(playerId, animation) && plugin.isDebug()) {
+            plugin.getLogger().info("Removed player " + playerId + " from processing list");
+        }
+    }
+
+    /**
+     * Marks a player as being teleported without an animation
+     * @param playerId The UUID of the player
+     * @return false if the player is already being teleported
+     */
+    public boolean reserve(UUID playerId) {
+        return !animations.containsKey(playerId) && reserved.add(playerId);
+    }
+
+    /**
+     * Clears the mark set by {@link #reserve(UUID)}
+     * @param playerId The UUID of the player
+     */
+    public void release(UUID playerId) {
+        reserved.remove(playerId);
+    }
+
+    /**
+     * @param playerId The UUID of the player
+     * @return true if the player is being teleported by SmoothTP, with or without an animation
+     */
+    public boolean isTeleporting(UUID playerId) {
+        return animations.containsKey(playerId) || reserved.contains(playerId);
+    }
+
+    /**
+     * @param playerId The UUID of the player
+     * @return The animation of the player, or null if the player isn't animating
+     */
+    public Animation get(UUID playerId) {
+        return animations.get(playerId);
+    }
+
+    /**
+     * @param playerId The UUID of the player
+     * @return The player's own animation, or null if the player isn't animating alone
+     */
+    public TransmissionProcess getProcess(UUID playerId) {
+        Animation animation = animations.get(playerId);
+        return animation instanceof TransmissionProcess ? (TransmissionProcess) animation : null;
+    }
+
+    /**
+     * Stops animating a player right away and releases what the animation holds
+     * @param playerId The UUID of the player
+     */
+    public void cancel(UUID playerId) {
+        reserved.remove(playerId);
+        Animation animation = animations.remove(playerId);
+        if (animation != null) {
+            cancel(animation, playerId);
+        }
+    }
+
+    /**
+     * Stops an animation for every player it drives, once it can't be ticked any more
+     * @param animation The animation to stop
+     */
+    public void cancel(Animation animation) {
+        for (Map.Entry<UUID, Animation> entry : new ArrayList<>(animations.entrySet())) {
+            if (entry.getValue() == animation) {
+                cancel(entry.getKey());
+            }
+        }
+    }
+
+    /**
+     * Stops every animation from or to a level
+     * @param level The level going away
+     */
+    public void cancelIn(Level level) {
+        for (Map.Entry<UUID, Animation> entry : new ArrayList<>(animations.entrySet())) {
+            if (entry.getValue().involves(level)) {
+                cancel(entry.getKey());
+            }
+        }
+    }
+
+    /**
+     * Stops every animation
+     */
+    public void cancelAll() {
+        for (UUID playerId : new ArrayList<>(animations.keySet())) {
+            cancel(playerId);
+        }
+        reserved.clear();
+    }
+
+    private void cancel(Animation animation, UUID playerId) {
+        try {
+            animation.cancel(playerId);
+        } catch (Exception e) {
+            plugin.getLogger().error("Error cancelling teleport animation: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * @return The number of players currently animating
+     */
+    public int getActivePlayers() {
+        return animations.size();
+    }
+
+    /**
+     * @return The number of animations currently running, a group counting once
+     */
+    public int getActiveAnimations() {
+        Set<Animation> distinct = Collections.newSetFromMap(new IdentityHashMap<>());
+        distinct.addAll(animations.values());
+        return distinct.size();
+    }
+}
@@ -0,0 +1,56 @@
+package com.youssgm3o8.smoothtp;
+
+import cn.nukkit.plugin.Plugin;
+import cn.nukkit.scheduler.TaskHandler;
+
+/**
+ * The scheduler animations run on, and the tick rate it keeps.
+ * The plugin uses the server's scheduler, the load simulation a virtual one
+ * that plays ticks back to back.
+ */
+public interface AnimationScheduler {
+
+    /**
+     * A scheduled repeating task
+     */
+    @FunctionalInterface
+    interface Task {
+        /**
+         * Stops running the task
+         */
+        void cancel();
+    }
+
+    /**
+     * Uses the server's scheduler
+     * @param plugin The plugin owning the tasks
+     * @return The server's scheduler
+     */
+    static AnimationScheduler of(Plugin plugin) {
+        return new AnimationScheduler() {
+            @Override
+            public Task scheduleRepeating(Runnable task, int period) {
+                TaskHandler handler = plugin.getServer().getScheduler().scheduleRepeatingTask(plugin, task, period);
+                return handler::cancel;
+            }
+
+            @Override
+            public double getTicksPerSecond() {
+                return plugin.getServer().getTicksPerSecond();
+            }
+        };
+    }
+
+    /**
+     * Runs a task on the main thread every few ticks, from the next tick on
+     * @param task The task to run
+     * @param period The number of ticks between two runs
+     * @return The scheduled task
+     */
+    Task scheduleRepeating(Runnable task, int period);
+
+    /**
+     * @return The number of ticks the server currently plays per second
+     */
+    double getTicksPerSecond();
+}
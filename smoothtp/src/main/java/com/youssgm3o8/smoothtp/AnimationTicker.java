@@ -0,0 +1,114 @@
+package com.youssgm3o8.smoothtp;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Drives every active teleport animation from a single repeating task.
+ * Each server tick the ticker steps the timeline of every registered
+ * {@link Animation} once, so the scheduler only ever holds one
+ * entry for the plugin no matter how many teleports are in flight.
+ */
+public class AnimationTicker implements Runnable {
+    private final Main plugin;
+    private final List<Animation> processes = new ArrayList<>();
+    private AnimationScheduler.Task task;
+    // Chunks the animations may still load during the current pass, shared by all of them
+    private int chunkBudget;
+
+    /**
+     * Creates a new ticker for the plugin
+     * @param plugin The plugin instance
+     */
+    public AnimationTicker(Main plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * Registers the repeating task that drives all animations
+     */
+    public void start() {
+        if (task == null) {
+            task = plugin.getAnimationScheduler().scheduleRepeating(this, 1);
+        }
+    }
+
+    /**
+     * Cancels the repeating task and forgets every animation in flight
+     */
+    public void stop() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+        processes.clear();
+    }
+
+    /**
+     * Adds an animation to be stepped from the next tick on
+     * @param process The animation to drive
+     */
+    public void add(Animation process) {
+        processes.add(process);
+    }
+
+    /**
+     * Takes one chunk load from the budget of the current pass
+     * @return false if the animations already loaded as many chunks as allowed this tick
+     */
+    public boolean tryLoadChunk() {
+        if (chunkBudget <= 0) {
+            return false;
+        }
+        chunkBudget--;
+        return true;
+    }
+
+    /**
+     * @return The number of animations currently driven by this ticker
+     */
+    public int size() {
+        return processes.size();
+    }
+
+    @Override
+    public void run() {
+        long start = System.nanoTime();
+        plugin.getFrameRate().update();
+        chunkBudget = plugin.getSettings().getPrewarmChunksPerServerTick();
+        
+        int size = processes.size();
+        int alive = 0;
+
+        for (int i = 0; i < size; i++) {
+            Animation process = processes.get(i);
+            boolean keep;
+            try {
+                keep = process.tick();
+            } catch (Exception e) {
+                plugin.getLogger().error("Error ticking teleport animation: " + e.getMessage(), e);
+                // Release its players, which also gives them their camera back
+                plugin.getAnimations().cancel(process);
+                keep = false;
+            }
+
+            if (keep) {
+                processes.set(alive++, process);
+            }
+        }
+
+        // Keep anything that was added while we were ticking
+        for (int i = size; i < processes.size(); i++) {
+            processes.set(alive++, processes.get(i));
+        }
+        // Trimmed from the end, a subList view would be allocated every pass
+        for (int i = processes.size() - 1; i >= alive; i--) {
+            processes.remove(i);
+        }
+        
+        // Idle ticks cost nothing worth reporting
+        if (size > 0) {
+            plugin.getTeleportStats().recordTick(System.nanoTime() - start);
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.youssgm3o8.smoothtp;
+
+import cn.nukkit.level.Location;
+
+/**
+ * A precomputed camera path, one keyframe per tick.
+ * Keyframes are stored as parallel primitive arrays so that playing the track
+ * back is just an array lookup, with no interpolation or allocation per tick.
+ */
+public class CameraTrack {
+    private final double[] x;
+    private final double[] y;
+    private final double[] z;
+    private final float[] yaw;
+    private final float[] pitch;
+    private int length;
+
+    /**
+     * Creates an empty track
+     * @param capacity The total number of frames the track will hold
+     */
+    public CameraTrack(int capacity) {
+        this.x = new double[capacity];
+        this.y = new double[capacity];
+        this.z = new double[capacity];
+        this.yaw = new float[capacity];
+        this.pitch = new float[capacity];
+    }
+
+    /**
+     * Computes the camera path of a whole teleport: ascent, hold, pan, hold, descent and stay.
+     * Between two levels there is nothing to pan across, so the camera stays above the start instead.
+     * Movements last at least one tick, holds may be empty.
+     * @param start Where the camera starts
+     * @param up The location above the start
+     * @param down The location above the destination
+     * @param destination Where the camera ends
+     * @param easing The easing curve of the movements, as registered in {@link Easing}
+     * @param ascentTicks The duration of the ascent
+     * @param holdUpTicks The duration of the hold after the ascent
+     * @param panTicks The duration of the pan
+     * @param holdDownTicks The duration of the hold after the pan
+     * @param descentTicks The duration of the descent
+     * @param downStayTicks The duration of the hold at the destination
+     * @param crossWorld true if the destination is in another level than the start
+     * @return The precomputed camera track
+     */
+    public static CameraTrack plan(Location start, Location up, Location down, Location destination, String easing,
+                                   int ascentTicks, int holdUpTicks, int panTicks, int holdDownTicks,
+                                   int descentTicks, int downStayTicks, boolean crossWorld) {
+        ascentTicks = Math.max(1, ascentTicks);
+        panTicks = Math.max(1, panTicks);
+        descentTicks = Math.max(1, descentTicks);
+
+        CameraTrack track = new CameraTrack(ascentTicks + Math.max(0, holdUpTicks)
+                + panTicks + Math.max(0, holdDownTicks)
+                + descentTicks + Math.max(0, downStayTicks));
+
+        // Progress tables are shared by every animation using the same curve and durations
+        track.move(start, up, Easing.table(easing, ascentTicks));
+        track.hold(up, holdUpTicks);
+        if (crossWorld) {
+            track.hold(up, panTicks);
+            track.hold(up, holdDownTicks);
+        } else {
+            track.move(up, down, Easing.table(easing, panTicks));
+            track.hold(down, holdDownTicks);
+        }
+        track.move(down, destination, Easing.table(easing, descentTicks));
+        track.hold(destination, downStayTicks);
+        return track;
+    }
+
+    /**
+     * Appends frames that smoothly move the camera between two locations.
+     * One frame is appended per table entry, the last one being exactly the target location.
+     * @param from The location the movement starts at
+     * @param to The location the movement ends at
+     * @param easing The shared progress table of the easing curve
+     */
+    public void move(Location from, Location to, Easing.Table easing) {
+        for (int i = 0; i < easing.length(); i++) {
+            float progress = easing.get(i);
+            append(
+                from.x + (to.x - from.x) * progress,
+                from.y + (to.y - from.y) * progress,
+                from.z + (to.z - from.z) * progress,
+                (float) (from.yaw + (to.yaw - from.yaw) * progress),
+                (float) (from.pitch + (to.pitch - from.pitch) * progress)
+            );
+        }
+    }
+
+    /**
+     * Appends frames that keep the camera still at a location
+     * @param at The location to hold
+     * @param ticks The number of frames to append
+     */
+    public void hold(Location at, int ticks) {
+        for (int i = 0; i < ticks; i++) {
+            append(at.x, at.y, at.z, (float) at.yaw, (float) at.pitch);
+        }
+    }
+
+    private void append(double x, double y, double z, float yaw, float pitch) {
+        this.x[length] = x;
+        this.y[length] = y;
+        this.z[length] = z;
+        this.yaw[length] = yaw;
+        this.pitch[length] = pitch;
+        length++;
+    }
+
+    /**
+     * @return The number of frames in the track
+     */
+    public int length() {
+        return length;
+    }
+
+    public double getX(int frame) {
+        return x[frame];
+    }
+
+    public double getY(int frame) {
+        return y[frame];
+    }
+
+    public double getZ(int frame) {
+        return z[frame];
+    }
+
+    public float getYaw(int frame) {
+        return yaw[frame];
+    }
+
+    public float getPitch(int frame) {
+        return pitch[frame];
+    }
+}
@@ -0,0 +1,185 @@
+package com.youssgm3o8.smoothtp;
+
+import cn.nukkit.level.ChunkLoader;
+import cn.nukkit.level.Level;
+import cn.nukkit.level.Location;
+import cn.nukkit.level.Position;
+import cn.nukkit.level.format.FullChunk;
+import cn.nukkit.math.Vector3;
+
+/**
+ * Prepares the chunks around a teleport destination a few at a time while the
+ * camera is still in the air, so they are ready by the time the player lands.
+ * Chunks saved on disk are read on the main thread; chunks that were never generated
+ * are queued on the level's asynchronous generator instead of being generated inline,
+ * and generated chunks missing their decorations are queued for population.
+ * <p>
+ * Disk reads and generation requests are limited per animation and by a budget shared
+ * by every animation of the ticker. The prewarmer holds the chunks it reached as a chunk loader, so the level
+ * doesn't unload them again before the landing; {@link #release()} lets them go.
+ */
+public class ChunkPrewarmer implements ChunkLoader {
+    private final Location destination;
+    private final Level level;
+    private final int perTick;
+    private final AnimationTicker ticker;
+    private final int loaderId;
+    private boolean released;
+    // Chunk coordinates to prepare, nearest to the destination first
+    private final int[] chunkX;
+    private final int[] chunkZ;
+    private int next;
+
+    /**
+     * Creates a prewarmer for a destination
+     * @param destination The teleport destination
+     * @param radius The radius in chunks to prepare around the destination
+     * @param perTick The maximum number of chunks to load each tick
+     * @param ticker The ticker whose chunk budget the loads are taken from
+     */
+    public ChunkPrewarmer(Location destination, int radius, int perTick, AnimationTicker ticker) {
+        this.destination = destination;
+        this.level = destination.getLevel();
+        this.perTick = Math.max(1, perTick);
+        this.ticker = ticker;
+        this.loaderId = Level.generateChunkLoaderId(this);
+
+        int centerX = destination.getFloorX() >> 4;
+        int centerZ = destination.getFloorZ() >> 4;
+        int side = radius * 2 + 1;
+        this.chunkX = new int[side * side];
+        this.chunkZ = new int[side * side];
+
+        // Walk outwards ring by ring so the chunk under the player comes first
+        int count = 0;
+        for (int ring = 0; ring <= radius; ring++) {
+            for (int dx = -ring; dx <= ring; dx++) {
+                for (int dz = -ring; dz <= ring; dz++) {
+                    if (Math.max(Math.abs(dx), Math.abs(dz)) == ring) {
+                        chunkX[count] = centerX + dx;
+                        chunkZ[count] = centerZ + dz;
+                        count++;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads the next batch of chunks from disk, and queues the missing ones for generation
+     */
+    public void tick() {
+        int requested = 0;
+        while (next < chunkX.length && requested < perTick && !released) {
+            int x = chunkX[next];
+            int z = chunkZ[next];
+
+            // Asking an unloaded chunk whether it is generated would load it, so loaded comes first
+            boolean loaded = level.isChunkLoaded(x, z);
+            boolean generated = loaded && level.isChunkGenerated(x, z);
+            if (!generated && !ticker.tryLoadChunk()) {
+                // The other animations used up this tick's loads, carry on next tick
+                break;
+            }
+
+            level.registerChunkLoader(this, x, z, false);
+            next++;
+            if (generated) {
+                // Population runs asynchronously too, once the neighbours are generated
+                if (!level.isChunkPopulated(x, z)) {
+                    level.populateChunk(x, z);
+                }
+                continue;
+            }
+
+            requested++;
+            // Only read what exists on disk, the rest is generated off the main thread.
+            // The budget already limits how much is queued, so the generator's own queue limit is bypassed.
+            if (!(loaded || level.loadChunk(x, z, false)) || !level.isChunkGenerated(x, z)) {
+                level.generateChunk(x, z, true);
+            }
+        }
+    }
+
+    /**
+     * Stops holding the chunks loaded so far, once the player landed or the animation ended
+     */
+    public void release() {
+        if (released) {
+            return;
+        }
+        released = true;
+        for (int i = 0; i < next; i++) {
+            level.unregisterChunkLoader(this, chunkX[i], chunkZ[i]);
+        }
+    }
+
+    /**
+     * @return true once every chunk in the radius is loaded and generated
+     */
+    public boolean isReady() {
+        for (int i = 0; i < chunkX.length; i++) {
+            if (!level.isChunkLoaded(chunkX[i], chunkZ[i]) || !level.isChunkGenerated(chunkX[i], chunkZ[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return true once every chunk has been requested
+     */
+    public boolean isDone() {
+        return next >= chunkX.length;
+    }
+
+    @Override
+    public int getLoaderId() {
+        return loaderId;
+    }
+
+    @Override
+    public boolean isLoaderActive() {
+        return !released;
+    }
+
+    @Override
+    public Position getPosition() {
+        return destination;
+    }
+
+    @Override
+    public double getX() {
+        return destination.x;
+    }
+
+    @Override
+    public double getZ() {
+        return destination.z;
+    }
+
+    @Override
+    public Level getLevel() {
+        return level;
+    }
+
+    @Override
+    public void onChunkChanged(FullChunk chunk) {
+    }
+
+    @Override
+    public void onChunkLoaded(FullChunk chunk) {
+    }
+
+    @Override
+    public void onChunkUnloaded(FullChunk chunk) {
+    }
+
+    @Override
+    public void onChunkPopulated(FullChunk chunk) {
+    }
+
+    @Override
+    public void onBlockChanged(Vector3 block) {
+    }
+}
@@ -0,0 +1,71 @@
+package com.youssgm3o8.smoothtp;
+
+import cn.nukkit.Server;
+import cn.nukkit.command.CommandSender;
+import cn.nukkit.scheduler.AsyncTask;
+import cn.nukkit.utils.Config;
+import cn.nukkit.utils.TextFormat;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reloads the config without stalling the server.
+ * The YAML file is parsed and validated on an async worker, and the resulting
+ * snapshot is swapped in on the main thread once it is complete.
+ * Animations already running keep the snapshot they started with.
+ */
+public class ConfigReloadTask extends AsyncTask {
+    private final Main plugin;
+    private final CommandSender sender;
+    private final File file;
+    private final List<String> warnings = new ArrayList<>();
+    private SmoothTpSettings loaded;
+    private Exception error;
+    private long parseNanos;
+
+    /**
+     * Creates a reload reporting to the given sender
+     * @param plugin The plugin instance
+     * @param sender Who asked for the reload
+     */
+    public ConfigReloadTask(Main plugin, CommandSender sender) {
+        this.plugin = plugin;
+        this.sender = sender;
+        this.file = new File(plugin.getDataFolder(), "config.yml");
+    }
+
+    @Override
+    public void onRun() {
+        long start = System.nanoTime();
+        try {
+            loaded = new SmoothTpSettings(new Config(file, Config.YAML), warnings);
+        } catch (Exception e) {
+            error = e;
+        }
+        parseNanos = System.nanoTime() - start;
+    }
+
+    @Override
+    public void onCompletion(Server server) {
+        plugin.finishReload();
+
+        if (error != null) {
+            plugin.getLogger().error("Failed to reload the config: " + error.getMessage(), error);
+            sender.sendMessage(TextFormat.RED + "SmoothTP config could not be reloaded: " + error.getMessage()
+                    + ". The previous settings are still in use.");
+            return;
+        }
+
+        plugin.applySettings(loaded);
+
+        for (String warning : warnings) {
+            plugin.getLogger().warning(warning);
+            sender.sendMessage(TextFormat.YELLOW + warning);
+        }
+        sender.sendMessage(TextFormat.GREEN + "SmoothTP config reloaded in "
+                + String.format("%.1f", parseNanos / 1_000_000.0) + " ms with " + warnings.size() + " warning"
+                + (warnings.size() == 1 ? "" : "s") + ". Running animations keep their previous settings.");
+    }
+}
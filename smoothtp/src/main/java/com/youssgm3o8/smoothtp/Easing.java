@@ -0,0 +1,248 @@
+package com.youssgm3o8.smoothtp;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of easing curves and a shared cache of their precomputed progress tables.
+ * Tables are keyed by curve and tick count, so every animation using the same
+ * settings reads the same immutable table instead of evaluating the curve per tick.
+ * The cache is bounded and cleared on config reload, since distance scaled durations
+ * can ask for many different tick counts.
+ */
+public final class Easing {
+    public static final String LINEAR = "LINEAR";
+    public static final String QUAD = "QUAD";
+    public static final String CUBIC = "CUBIC";
+    public static final String EXPO = "EXPO";
+    public static final String SINE = "SINE";
+    public static final String BEZIER = "BEZIER";
+
+    private static final Map<String, Curve> CURVES = new ConcurrentHashMap<>();
+    private static final Map<String, Table> TABLES = new ConcurrentHashMap<>();
+    // Guards registering curves and filling the table cache, lookups of cached tables don't lock
+    private static final Object LOCK = new Object();
+    private static final int MAX_TABLES = 512;
+
+    static {
+        register(LINEAR, t -> t);
+        register(QUAD, Easing::easeInOutQuad);
+        register(CUBIC, Easing::easeInOutCubic);
+        register(EXPO, Easing::easeInOutExpo);
+        register(SINE, Easing::easeInOutSine);
+    }
+
+    private Easing() {
+    }
+
+    /**
+     * An easing curve mapping linear progress to eased progress
+     */
+    @FunctionalInterface
+    public interface Curve {
+        /**
+         * @param t Progress value from 0.0 to 1.0
+         * @return Eased value
+         */
+        float apply(float t);
+    }
+
+    /**
+     * An immutable table of eased progress values for a fixed number of ticks.
+     * Entry {@code i} holds the eased progress after tick {@code i + 1}, so the last entry is always 1.0.
+     */
+    public static final class Table {
+        private final float[] progress;
+
+        private Table(float[] progress) {
+            this.progress = progress;
+        }
+
+        /**
+         * @param tick The tick index, from 0 to {@link #length()} - 1
+         * @return The eased progress after that tick
+         */
+        public float get(int tick) {
+            return progress[tick];
+        }
+
+        /**
+         * @return The number of ticks in the table
+         */
+        public int length() {
+            return progress.length;
+        }
+    }
+
+    /**
+     * Registers a curve, replacing any curve with the same name
+     * @param name The name used to select the curve from config
+     * @param curve The curve
+     */
+    public static void register(String name, Curve curve) {
+        String key = name.toUpperCase(Locale.ROOT);
+        synchronized (LOCK) {
+            CURVES.put(key, curve);
+
+            // Drop any tables computed from a previous curve with this name
+            TABLES.keySet().removeIf(tableKey -> tableKey.startsWith(key + "@"));
+        }
+    }
+
+    /**
+     * Resolves a curve name from config, registering bezier curves on first use.
+     * Bezier curves are written as {@code BEZIER(x1, y1, x2, y2)}.
+     * @param name The configured curve name
+     * @return The normalized curve name, or null if the name is not a valid curve
+     */
+    public static String resolve(String name) {
+        if (name == null) {
+            return null;
+        }
+
+        String key = name.replace(" ", "").toUpperCase(Locale.ROOT);
+        if (CURVES.containsKey(key)) {
+            return key;
+        }
+
+        if (key.startsWith(BEZIER + "(") && key.endsWith(")")) {
+            String[] parts = key.substring(BEZIER.length() + 1, key.length() - 1).split(",");
+            if (parts.length != 4) {
+                return null;
+            }
+
+            try {
+                float x1 = Float.parseFloat(parts[0]);
+                float y1 = Float.parseFloat(parts[1]);
+                float x2 = Float.parseFloat(parts[2]);
+                float y2 = Float.parseFloat(parts[3]);
+                if (x1 < 0 || x1 > 1 || x2 < 0 || x2 > 1) {
+                    return null;
+                }
+                CURVES.putIfAbsent(key, bezier(x1, y1, x2, y2));
+                return key;
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Gets the shared progress table for a curve and tick count, computing it on first use
+     * @param name A curve name returned by {@link #resolve(String)}
+     * @param ticks The number of ticks, at least 1
+     * @return The shared immutable table
+     */
+    public static Table table(String name, int ticks) {
+        String key = name + "@" + ticks;
+        Table table = TABLES.get(key);
+        if (table != null) {
+            return table;
+        }
+
+        // The curve is read under the lock so a table can't be cached for a curve replaced meanwhile
+        synchronized (LOCK) {
+            table = TABLES.get(key);
+            if (table != null) {
+                return table;
+            }
+
+            Curve curve = CURVES.get(name);
+            if (curve == null) {
+                throw new IllegalArgumentException("Unknown easing curve: " + name);
+            }
+
+            float[] progress = new float[ticks];
+            for (int i = 0; i < ticks; i++) {
+                progress[i] = curve.apply((float) (i + 1) / ticks);
+            }
+            // Make sure the movement always ends exactly on its target
+            progress[ticks - 1] = 1.0f;
+            table = new Table(progress);
+
+            // Running animations keep their own reference, so dropping the cache only costs recomputing
+            if (TABLES.size() >= MAX_TABLES) {
+                TABLES.clear();
+            }
+            TABLES.put(key, table);
+            return table;
+        }
+    }
+
+    /**
+     * Drops every cached table, they are computed again on next use
+     */
+    public static void clearTables() {
+        synchronized (LOCK) {
+            TABLES.clear();
+        }
+    }
+
+    /**
+     * Easing function for smooth acceleration and deceleration
+     */
+    private static float easeInOutQuad(float t) {
+        return t < 0.5f ? 2.0f * t * t : 1.0f - (float)Math.pow(-2.0f * t + 2.0f, 2) / 2.0f;
+    }
+
+    /**
+     * Easing function with even more friction
+     */
+    private static float easeInOutCubic(float t) {
+        return t < 0.5f ? 4.0f * t * t * t : 1.0f - (float)Math.pow(-2.0f * t + 2.0f, 3) / 2.0f;
+    }
+
+    /**
+     * Exponential easing, almost still at both ends with a fast middle
+     */
+    private static float easeInOutExpo(float t) {
+        if (t <= 0.0f) return 0.0f;
+        if (t >= 1.0f) return 1.0f;
+        return t < 0.5f
+                ? (float) Math.pow(2, 20 * t - 10) / 2.0f
+                : (2.0f - (float) Math.pow(2, -20 * t + 10)) / 2.0f;
+    }
+
+    /**
+     * Sinusoidal easing, the gentlest of the symmetric curves
+     */
+    private static float easeInOutSine(float t) {
+        return -((float) Math.cos(Math.PI * t) - 1.0f) / 2.0f;
+    }
+
+    /**
+     * Creates a CSS-style cubic bezier curve through (0, 0) and (1, 1)
+     */
+    private static Curve bezier(float x1, float y1, float x2, float y2) {
+        return t -> {
+            if (t <= 0.0f) return 0.0f;
+            if (t >= 1.0f) return 1.0f;
+
+            // Find the curve parameter whose x matches t by bisection, then evaluate y
+            double low = 0.0;
+            double high = 1.0;
+            double u = t;
+            for (int i = 0; i < 32; i++) {
+                double x = bezierPoint(u, x1, x2);
+                if (Math.abs(x - t) < 1.0e-6) {
+                    break;
+                }
+                if (x < t) {
+                    low = u;
+                } else {
+                    high = u;
+                }
+                u = (low + high) / 2.0;
+            }
+            return (float) bezierPoint(u, y1, y2);
+        };
+    }
+
+    private static double bezierPoint(double u, double p1, double p2) {
+        double inv = 1.0 - u;
+        return 3.0 * inv * inv * u * p1 + 3.0 * inv * u * u * p2 + u * u * u;
+    }
+}
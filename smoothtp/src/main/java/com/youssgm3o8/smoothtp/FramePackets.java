@@ -0,0 +1,210 @@
+package com.youssgm3o8.smoothtp;
+
+import cn.nukkit.network.protocol.DataPacket;
+import cn.nukkit.network.protocol.MoveEntityAbsolutePacket;
+import cn.nukkit.network.protocol.MoveEntityDeltaPacket;
+import cn.nukkit.network.protocol.MovePlayerPacket;
+
+/**
+ * Reusable movement packets for the frames of a single animation.
+ * Instead of building new packets every tick, the same instances are updated in place
+ * and marked for re-encoding, so playing a frame does not allocate any packet objects.
+ * <p>
+ * The network layer may keep a reference to a sent packet until its queue is flushed
+ * at the end of the tick, so each packet must be sent at most once per tick.
+ * <p>
+ * Entity movement can be delta encoded: only the components that changed since the
+ * last sent position are written, with a full absolute snapshot at a fixed interval
+ * and whenever the entity jumps further than a threshold.
+ */
+public class FramePackets {
+    // Smallest rotation change the protocol can express, rotations are sent as a byte
+    private static final float ROTATION_STEP = 360.0f / 256.0f;
+
+    private final MoveEntityAbsolutePacket entityMove = new MoveEntityAbsolutePacket();
+    private final MoveEntityDeltaPacket entityDelta = new MoveEntityDeltaPacket();
+    private final MovePlayerPacket cameraMove = new MovePlayerPacket();
+
+    private final boolean deltaEncoding;
+    private final int snapshotInterval;
+    private final double maxJump;
+
+    // Last entity position known to the client, for delta encoding
+    private boolean hasLast;
+    private float lastX;
+    private float lastY;
+    private float lastZ;
+    private float lastYaw;
+    private float lastPitch;
+    private int sinceSnapshot;
+
+    // Estimated bytes of entity movement sent, and the frames they were sent for
+    private long entityBytes;
+    private int entityFrames;
+
+    /**
+     * Creates the packets for an animation with absolute entity movement
+     * @param entityId The ID of the virtual camera entity
+     * @param playerId The ID of the animated player
+     */
+    public FramePackets(long entityId, long playerId) {
+        this(entityId, playerId, false, 0, 0);
+    }
+
+    /**
+     * Creates the packets for an animation
+     * @param entityId The ID of the virtual camera entity
+     * @param playerId The ID of the animated player
+     * @param deltaEncoding true to send entity movement as deltas where possible
+     * @param snapshotInterval The number of frames between two absolute snapshots
+     * @param maxJump The distance in blocks above which an absolute snapshot is sent
+     */
+    public FramePackets(long entityId, long playerId, boolean deltaEncoding, int snapshotInterval, double maxJump) {
+        this.deltaEncoding = deltaEncoding;
+        this.snapshotInterval = snapshotInterval;
+        this.maxJump = maxJump;
+
+        entityMove.eid = entityId;
+        entityMove.onGround = false;
+
+        entityDelta.runtimeEntityId = entityId;
+
+        cameraMove.eid = playerId;
+        cameraMove.mode = MovePlayerPacket.MODE_TELEPORT;
+    }
+
+    /**
+     * Updates the entity movement packet for a new position
+     * @return The updated packet, ready to be sent
+     */
+    public DataPacket entityMove(double x, double y, double z, float yaw, float pitch) {
+        float fx = (float) x;
+        float fy = (float) y;
+        float fz = (float) z;
+
+        DataPacket packet;
+        if (deltaEncoding && hasLast && sinceSnapshot < snapshotInterval && !isJump(fx, fy, fz)) {
+            packet = entityDelta(fx, fy, fz, yaw, pitch);
+            sinceSnapshot++;
+        } else {
+            packet = entityAbsolute(fx, fy, fz, yaw, pitch);
+            sinceSnapshot = 0;
+        }
+
+        hasLast = true;
+        lastX = fx;
+        lastY = fy;
+        lastZ = fz;
+        entityFrames++;
+        return packet;
+    }
+
+    private boolean isJump(float x, float y, float z) {
+        double dx = x - lastX;
+        double dy = y - lastY;
+        double dz = z - lastZ;
+        return dx * dx + dy * dy + dz * dz > maxJump * maxJump;
+    }
+
+    private MoveEntityAbsolutePacket entityAbsolute(float x, float y, float z, float yaw, float pitch) {
+        entityMove.x = x;
+        entityMove.y = y;
+        entityMove.z = z;
+        entityMove.yaw = yaw;
+        entityMove.pitch = pitch;
+        entityMove.headYaw = yaw;
+        entityMove.isEncoded = false;
+        lastYaw = yaw;
+        lastPitch = pitch;
+        entityBytes += PacketSizes.MOVE_ENTITY_ABSOLUTE;
+        return entityMove;
+    }
+
+    private MoveEntityDeltaPacket entityDelta(float x, float y, float z, float yaw, float pitch) {
+        int flags = 0;
+        int bytes = PacketSizes.MOVE_ENTITY_DELTA;
+
+        if (x != lastX) {
+            flags |= MoveEntityDeltaPacket.FLAG_HAS_X;
+            bytes += PacketSizes.DELTA_POSITION;
+        }
+        if (y != lastY) {
+            flags |= MoveEntityDeltaPacket.FLAG_HAS_Y;
+            bytes += PacketSizes.DELTA_POSITION;
+        }
+        if (z != lastZ) {
+            flags |= MoveEntityDeltaPacket.FLAG_HAS_Z;
+            bytes += PacketSizes.DELTA_POSITION;
+        }
+        if (Math.abs(yaw - lastYaw) >= ROTATION_STEP) {
+            flags |= MoveEntityDeltaPacket.FLAG_HAS_YAW | MoveEntityDeltaPacket.FLAG_HAS_HEAD_YAW;
+            bytes += 2 * PacketSizes.DELTA_ROTATION;
+        } else {
+            // Not sent, so the client still has the previous value
+            yaw = lastYaw;
+        }
+        if (Math.abs(pitch - lastPitch) >= ROTATION_STEP) {
+            flags |= MoveEntityDeltaPacket.FLAG_HAS_PITCH;
+            bytes += PacketSizes.DELTA_ROTATION;
+        } else {
+            pitch = lastPitch;
+        }
+
+        entityDelta.flags = flags;
+        entityDelta.x = x;
+        entityDelta.y = y;
+        entityDelta.z = z;
+        entityDelta.yawDelta = yaw;
+        entityDelta.headYawDelta = yaw;
+        entityDelta.pitchDelta = pitch;
+        entityDelta.isEncoded = false;
+        lastYaw = yaw;
+        lastPitch = pitch;
+        entityBytes += bytes;
+        return entityDelta;
+    }
+
+    /**
+     * Chooses whether the client snaps the camera to each position or interpolates towards it
+     * @param interpolated true to let the client interpolate between sparse keyframes
+     */
+    public void setInterpolated(boolean interpolated) {
+        cameraMove.mode = interpolated ? MovePlayerPacket.MODE_NORMAL : MovePlayerPacket.MODE_TELEPORT;
+    }
+
+    /**
+     * Updates the camera movement packet for a new position
+     * @return The updated packet, ready to be sent
+     */
+    public MovePlayerPacket cameraMove(double x, double y, double z, float yaw, float pitch) {
+        cameraMove.x = (float) x;
+        cameraMove.y = (float) y;
+        cameraMove.z = (float) z;
+        cameraMove.yaw = yaw;
+        cameraMove.pitch = pitch;
+        cameraMove.headYaw = yaw;
+        cameraMove.isEncoded = false;
+        return cameraMove;
+    }
+
+    /**
+     * @return The estimated number of bytes of entity movement sent so far
+     */
+    public long getEntityBytes() {
+        return entityBytes;
+    }
+
+    /**
+     * @return The number of entity movement frames sent so far
+     */
+    public int getEntityFrames() {
+        return entityFrames;
+    }
+
+    /**
+     * @return true if entity movement is delta encoded
+     */
+    public boolean isDeltaEncoding() {
+        return deltaEncoding;
+    }
+}
@@ -0,0 +1,87 @@
+package com.youssgm3o8.smoothtp;
+
+/**
+ * Chooses how often animation keyframes are sent, based on measured tick time.
+ * While the server keeps up every tick is a keyframe. As ticks get slower, frames
+ * are only sent every few ticks and the client interpolates between them.
+ * Players on a slow connection get sparser keyframes as well, since they could not
+ * make use of one frame per tick anyway.
+ * The animation timeline itself always advances once per tick, so durations never change.
+ */
+public class FrameRate {
+    // Length of a tick on a healthy server, in milliseconds
+    private static final double HEALTHY_TICK_MS = 50.0;
+    // Weight of the latest tick in the moving average
+    private static final double SMOOTHING = 0.1;
+
+    private final Main plugin;
+    private boolean enabled;
+    private boolean pingEnabled;
+    private int maxInterval;
+    private int pingPerStep;
+    private long lastTickNanos;
+    private double averageTickMs = HEALTHY_TICK_MS;
+    private int interval = 1;
+
+    /**
+     * Creates an adaptive frame rate following the current settings
+     * @param plugin The plugin instance
+     */
+    public FrameRate(Main plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * Measures the time since the last call and updates the keyframe interval.
+     * Must be called once per tick.
+     */
+    public void update() {
+        long now = System.nanoTime();
+        if (lastTickNanos != 0) {
+            double tickMs = (now - lastTickNanos) / 1_000_000.0;
+            averageTickMs += (tickMs - averageTickMs) * SMOOTHING;
+        }
+        lastTickNanos = now;
+
+        SmoothTpSettings settings = plugin.getSettings();
+        enabled = settings.isAdaptiveFrames();
+        pingEnabled = settings.isPingAdaptiveFrames();
+        maxInterval = settings.getMaxFrameInterval();
+        pingPerStep = settings.getPingPerStep();
+
+        if (enabled) {
+            int steps = (int) (Math.max(0.0, averageTickMs - HEALTHY_TICK_MS) / settings.getMsPerStep());
+            interval = Math.min(maxInterval, 1 + steps);
+        } else {
+            interval = 1;
+        }
+    }
+
+    /**
+     * @return The number of ticks between keyframes, 1 when the server is healthy
+     */
+    public int getInterval() {
+        return interval;
+    }
+
+    /**
+     * Gets the keyframe interval for a player, taking both the server and their connection into account.
+     * Each side is only considered while its own adaptation is enabled.
+     * @param ping The player's ping in milliseconds
+     * @return The number of ticks between keyframes for the player
+     */
+    public int getInterval(int ping) {
+        if (!pingEnabled) {
+            return interval;
+        }
+        int pingInterval = Math.min(maxInterval, 1 + Math.max(0, ping) / pingPerStep);
+        return Math.max(interval, pingInterval);
+    }
+
+    /**
+     * @return The moving average of the tick length, in milliseconds
+     */
+    public double getAverageTickMs() {
+        return averageTickMs;
+    }
+}
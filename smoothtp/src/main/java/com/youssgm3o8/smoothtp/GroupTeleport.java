@@ -0,0 +1,486 @@
+package com.youssgm3o8.smoothtp;
+
+import cn.nukkit.Player;
+import cn.nukkit.level.Level;
+import cn.nukkit.level.Location;
+import cn.nukkit.network.protocol.DataPacket;
+import cn.nukkit.network.protocol.LevelEventPacket;
+import cn.nukkit.network.protocol.MovePlayerPacket;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Teleports several players to the same destination with a single shared animation.
+ * The group follows one precomputed camera track, prepares the destination once and
+ * lands on the same tick. Members only drive their camera, without a virtual entity,
+ * so each of them costs one reused camera packet per frame.
+ * <p>
+ * Every member must start in the same level. Each member has their own packet batch
+ * and frame interval, and their own future, completed when the group lands.
+ */
+public class GroupTeleport implements Animation {
+    // Ticks between two reads of the members' ping
+    private static final int PING_SAMPLE_INTERVAL = 20;
+
+    private final Main plugin;
+    private final SmoothTpSettings settings;
+    private final Player[] members;
+    // The members as seen by the animation, with the batch their packets are collected in
+    private final AnimatedPlayer[] players;
+    private final PacketBatch[] batches;
+    // Completed when each member lands, or exceptionally if they leave the group first
+    private final List<CompletableFuture<TeleportResult>> completions;
+    // Members that left the group before it landed, no longer animated
+    private final boolean[] left;
+    private int activeMembers;
+    private final Location destination;
+    private final Level startLevel;
+    // Reused camera packet of each member, the packet carries the member's own entity ID
+    private final MovePlayerPacket[] cameras;
+    // Where each member's camera starts relative to the group's, closed during the ascent
+    private final double[] offsetX;
+    private final double[] offsetY;
+    private final double[] offsetZ;
+    private final CameraTrack track;
+    private final int ascentTicks;
+    // Index of the first frame after landing
+    private final int landingFrame;
+    private final boolean crossWorld;
+    private final boolean playSound;
+    private final boolean useTitle;
+    private ChunkPrewarmer prewarmer;
+    // Trace of the group, picked by its leader, null unless traced
+    private final Trace trace;
+    // Last sampled ping of each member, and ticks until they are sampled again
+    private final int[] pings;
+    private int pingSampleIn;
+    private int frame;
+    private int waited;
+    private boolean landed;
+    private boolean done;
+    // Whether the group is teleporting its members itself, so the events are not taken for other teleports
+    private boolean teleporting;
+
+    /**
+     * Creates and starts a group teleport
+     * @param plugin The plugin instance
+     * @param members The players to teleport, all in the same level, the first one leads the camera
+     * @param destination The destination of every member
+     * @param timeScale The factor applied to every configured duration
+     * @throws IllegalArgumentException if a member is in another level than the first one
+     */
+    public GroupTeleport(Main plugin, List<Player> members, Location destination, double timeScale) {
+        this.plugin = plugin;
+        this.settings = plugin.getSettings();
+        this.members = members.toArray(new Player[0]);
+        this.destination = destination;
+        this.playSound = settings.isPlaySound();
+        this.useTitle = settings.getAnimationType().equals("BOTH");
+
+        this.left = new boolean[this.members.length];
+        this.activeMembers = this.members.length;
+
+        Location start = this.members[0].getLocation().clone();
+        this.startLevel = start.getLevel();
+        this.crossWorld = startLevel != destination.getLevel();
+
+        this.players = new AnimatedPlayer[this.members.length];
+        this.batches = new PacketBatch[this.members.length];
+        this.completions = new ArrayList<>(this.members.length);
+        this.pings = new int[this.members.length];
+        this.cameras = new MovePlayerPacket[this.members.length];
+        this.offsetX = new double[this.members.length];
+        this.offsetY = new double[this.members.length];
+        this.offsetZ = new double[this.members.length];
+        for (int i = 0; i < this.members.length; i++) {
+            Player member = this.members[i];
+            // The shared track and the offsets to it only make sense within one level
+            if (member.getLevel() != startLevel) {
+                throw new IllegalArgumentException(member.getName() + " is not in the same level as " + this.members[0].getName());
+            }
+            players[i] = AnimatedPlayer.of(member);
+            batches[i] = new PacketBatch(players[i], settings.isBatchPackets());
+            completions.add(new CompletableFuture<>());
+
+            MovePlayerPacket camera = new MovePlayerPacket();
+            camera.eid = member.getId();
+            camera.mode = MovePlayerPacket.MODE_TELEPORT;
+            cameras[i] = camera;
+            offsetX[i] = member.getX() - start.x;
+            offsetY[i] = member.getY() - start.y;
+            offsetZ[i] = member.getZ() - start.z;
+        }
+
+        int upDuration = scale(settings.getUpDuration(), timeScale);
+        int fadeInDuration = scale(settings.getFadeInDuration(), timeScale);
+        int stayDuration = scale(settings.getStayDuration(), timeScale);
+        int fadeOutDuration = scale(settings.getFadeOutDuration(), timeScale);
+        int downDuration = scale(settings.getDownDuration(), timeScale);
+        int downStayDuration = scale(settings.getDownStayDuration(), timeScale);
+        this.ascentTicks = Math.max(1, upDuration);
+        int panTicks = Math.max(1, stayDuration);
+        this.landingFrame = ascentTicks + fadeInDuration + panTicks + fadeOutDuration;
+
+        Location upLocation = start.clone();
+        upLocation.y += settings.getUpOffset();
+        upLocation.pitch = 90; // Look down
+
+        Location downLocation = destination.clone();
+        downLocation.y += settings.getUpOffset();
+        downLocation.pitch = 90; // Look down
+
+        // One track for the whole group, laid out like a single player's
+        track = CameraTrack.plan(start, upLocation, downLocation, destination, settings.getEasing(),
+                upDuration, fadeInDuration, stayDuration, fadeOutDuration, downDuration, downStayDuration, crossWorld);
+
+        // The destination is shared, so its chunks are only prepared once
+        if (settings.isPrewarmChunks() || crossWorld) {
+            prewarmer = new ChunkPrewarmer(destination, settings.getPrewarmRadius(), settings.getPrewarmChunksPerTick(),
+                    plugin.getAnimationTicker());
+        }
+
+        this.trace = plugin.getTraceLog().begin(players[0]);
+        if (trace != null) {
+            trace.log("Starting group teleport of {} players to {}", this.members.length, destination);
+        }
+
+        for (Player member : this.members) {
+            plugin.getAnimations().register(member.getUniqueId(), this);
+        }
+        plugin.getTeleportStats().recordAnimationStarted();
+
+        setVisible(false);
+        if (playSound) {
+            playTeleportSound(start);
+        }
+        if (useTitle) {
+            for (AnimatedPlayer player : players) {
+                player.sendTitle("§0", "", 0, settings.getFadeDuration(), 0);
+            }
+        }
+
+        plugin.getAnimationTicker().add(this);
+    }
+
+    private static int scale(int ticks, double timeScale) {
+        return (int) Math.round(ticks * timeScale);
+    }
+
+    @Override
+    public boolean tick() {
+        if (done) {
+            // Every member left since the last tick
+            return false;
+        }
+
+        // Everything sent to a member during this tick goes out as one batch
+        for (PacketBatch batch : batches) {
+            batch.begin();
+        }
+        try {
+            if (prewarmer != null && !prewarmer.isDone()) {
+                prewarmer.tick();
+            }
+
+            if (--pingSampleIn <= 0) {
+                for (int i = 0; i < players.length; i++) {
+                    if (!left[i]) {
+                        pings[i] = players[i].getPing();
+                    }
+                }
+                pingSampleIn = PING_SAMPLE_INTERVAL;
+            }
+
+            if (!landed && frame == landingFrame) {
+                if (crossWorld && !prewarmer.isReady() && waited < settings.getCrossWorldTimeout()) {
+                    // Hold the group in the air until the target level is ready
+                    waited++;
+                    playFrame(frame - 1, true);
+                    return true;
+                }
+                land();
+            }
+
+            playFrame(frame, false);
+
+            if (++frame >= track.length()) {
+                finish(null);
+                return false;
+            }
+            return true;
+        } catch (Exception e) {
+            plugin.getLogger().error("Error during group teleport: " + e.getMessage(), e);
+            if (!landed) {
+                teleporting = true;
+                try {
+                    for (int i = 0; i < players.length; i++) {
+                        if (!left[i]) {
+                            players[i].teleport(destination);
+                        }
+                    }
+                } finally {
+                    teleporting = false;
+                }
+            }
+            finish(e);
+            return false;
+        } finally {
+            for (PacketBatch batch : batches) {
+                batch.flush();
+            }
+        }
+    }
+
+    /**
+     * Sends a frame of the shared track to every member due a frame.
+     * Under load or on a slow connection, members only get every few frames and their client interpolates.
+     * @param hold true to send the frame to everyone, while the group waits in the air
+     */
+    private void playFrame(int index, boolean hold) {
+        double x = track.getX(index);
+        double y = track.getY(index);
+        double z = track.getZ(index);
+        float yaw = track.getYaw(index);
+        float pitch = track.getPitch(index);
+        // Members start from their own position and meet above the group's start
+        double spread = index < ascentTicks ? 1.0 - (double) (index + 1) / ascentTicks : 0.0;
+        // The last frames before landing and of the track are always sent
+        boolean last = index + 1 == landingFrame || index + 1 == track.length();
+
+        for (int i = 0; i < players.length; i++) {
+            if (left[i] || !players[i].isOnline()) {
+                continue;
+            }
+
+            int interval = plugin.getFrameRate().getInterval(pings[i]);
+            if (!hold && !last && index % interval != 0) {
+                continue;
+            }
+
+            MovePlayerPacket camera = cameras[i];
+            camera.x = (float) (x + offsetX[i] * spread);
+            camera.y = (float) (y + offsetY[i] * spread);
+            camera.z = (float) (z + offsetZ[i] * spread);
+            camera.yaw = yaw;
+            camera.pitch = pitch;
+            camera.headYaw = yaw;
+            camera.mode = hold || interval > 1 ? MovePlayerPacket.MODE_NORMAL : MovePlayerPacket.MODE_TELEPORT;
+            camera.isEncoded = false;
+            batches[i].send(camera);
+        }
+    }
+
+    /**
+     * Teleports every member to the destination on the same tick
+     */
+    private void land() {
+        landed = true;
+
+        if (trace != null) {
+            trace.log("Landing group of {} players at {}", activeMembers, destination);
+        }
+
+        if (prewarmer != null) {
+            plugin.getTeleportStats().recordLanding(prewarmer.isReady());
+        }
+
+        teleporting = true;
+        try {
+            for (int i = 0; i < players.length; i++) {
+                AnimatedPlayer player = players[i];
+                if (left[i] || !player.isOnline()) {
+                    continue;
+                }
+
+                // Apply no fall damage effect before teleporting
+                player.protectFromFall(60);
+                if (player.teleport(destination)) {
+                    complete(i, TeleportResult.ANIMATED, null);
+                } else {
+                    complete(i, TeleportResult.FAILED,
+                            new IllegalStateException("Teleport of " + player.getName() + " was cancelled"));
+                }
+
+                if (useTitle) {
+                    player.sendTitle("", "", 0, settings.getFadeDuration(), 0);
+                }
+            }
+        } finally {
+            teleporting = false;
+        }
+
+        // The members hold the chunks around them from here on
+        releaseChunks();
+
+        if (playSound) {
+            playTeleportSound(destination);
+        }
+    }
+
+    /**
+     * Completes a member's future and announces it, unless already done
+     */
+    private void complete(int index, TeleportResult result, Throwable error) {
+        CompletableFuture<TeleportResult> completion = completions.get(index);
+        if (!completion.isDone()) {
+            plugin.completeTeleport(players[index], destination, completion, result, error);
+        }
+    }
+
+    /**
+     * Stops holding the destination chunks, the level may unload them again
+     */
+    private void releaseChunks() {
+        if (prewarmer != null) {
+            prewarmer.release();
+            prewarmer = null;
+        }
+    }
+
+    /**
+     * Shows the members again and releases them
+     * @param error The error that stopped the group, or null once it completed
+     */
+    private void finish(Exception error) {
+        done = true;
+        releaseChunks();
+        setVisible(true);
+        recordEnd(error == null);
+
+        String teleportMessage = settings.getTeleportMessage();
+        for (int i = 0; i < players.length; i++) {
+            if (left[i]) {
+                continue;
+            }
+            AnimatedPlayer player = players[i];
+            if (error == null && !teleportMessage.isEmpty() && player.isOnline()) {
+                player.sendMessage(teleportMessage);
+            }
+            // Members that landed are already completed
+            if (!completions.get(i).isDone()) {
+                complete(i, TeleportResult.FAILED, error != null ? error
+                        : new IllegalStateException(player.getName() + " did not land"));
+            }
+            plugin.getAnimations().unregister(player.getUniqueId(), this);
+        }
+    }
+
+    /**
+     * Records the end of the group and everything sent to its members
+     */
+    private void recordEnd(boolean completed) {
+        long packets = 0;
+        long bytes = 0;
+        for (PacketBatch batch : batches) {
+            packets += batch.getPackets();
+            bytes += batch.getBytes();
+        }
+        plugin.getTeleportStats().recordAnimationEnded(completed, packets, bytes);
+    }
+
+    @Override
+    public void cancel(UUID playerId) {
+        for (int i = 0; i < players.length; i++) {
+            AnimatedPlayer player = players[i];
+            if (left[i] || !player.getUniqueId().equals(playerId)) {
+                continue;
+            }
+
+            if (trace != null) {
+                trace.log("Removing {} from group teleport", player.getName());
+            }
+
+            // Show the member again, the rest of the group carries on without them
+            left[i] = true;
+            activeMembers--;
+            player.broadcastToViewers(VirtualEntity.visibilityPacket(player.getId(), true));
+            // Their camera was left wherever the group is
+            if (player.isOnline()) {
+                batches[i].send(VirtualEntity.cameraResetPacket(player.getId(), player.getLocation()));
+            }
+            plugin.getAnimations().unregister(playerId, this);
+            complete(i, TeleportResult.FAILED, new IllegalStateException(player.getName() + " left the group teleport"));
+        }
+
+        if (activeMembers == 0 && !done) {
+            done = true;
+            releaseChunks();
+            recordEnd(false);
+        }
+    }
+
+    /**
+     * @return true while the group itself is teleporting its members
+     */
+    public boolean isTeleporting() {
+        return teleporting;
+    }
+
+    @Override
+    public boolean involves(Level level) {
+        return startLevel == level || destination.getLevel() == level;
+    }
+
+    /**
+     * Hides or shows every member with a single batch sent to everyone viewing any of them
+     */
+    private void setVisible(boolean visible) {
+        Set<Player> viewers = new LinkedHashSet<>();
+        DataPacket[] packets = new DataPacket[members.length];
+        int count = 0;
+        for (int i = 0; i < members.length; i++) {
+            if (!left[i]) {
+                viewers.addAll(members[i].getViewers().values());
+                packets[count++] = VirtualEntity.visibilityPacket(members[i].getId(), visible);
+            }
+        }
+        if (count < packets.length) {
+            packets = Arrays.copyOf(packets, count);
+        }
+
+        if (!viewers.isEmpty() && count > 0) {
+            plugin.getServer().batchPackets(viewers.toArray(new Player[0]), packets);
+        }
+
+        int others = players[0].getOtherPlayers();
+        plugin.getTeleportStats().recordViewerBroadcast(viewers.size(), Math.max(0, others - viewers.size()));
+    }
+
+    /**
+     * Plays the Enderman teleport sound to every member, sharing a single packet
+     */
+    private void playTeleportSound(Location location) {
+        LevelEventPacket soundPacket = new LevelEventPacket();
+        soundPacket.evid = LevelEventPacket.EVENT_SOUND_ENDERMAN_TELEPORT;
+        soundPacket.x = (float) location.x;
+        soundPacket.y = (float) location.y;
+        soundPacket.z = (float) location.z;
+        soundPacket.data = 0;
+        for (int i = 0; i < players.length; i++) {
+            if (!left[i] && players[i].isOnline()) {
+                batches[i].send(soundPacket);
+            }
+        }
+    }
+
+    /**
+     * @return The players teleported together
+     */
+    public List<Player> getMembers() {
+        return Collections.unmodifiableList(Arrays.asList(members));
+    }
+
+    /**
+     * @return The future of each member, in the order of {@link #getMembers()}
+     */
+    public List<CompletableFuture<TeleportResult>> getCompletions() {
+        return Collections.unmodifiableList(completions);
+    }
+}
@@ -0,0 +1,98 @@
+package com.youssgm3o8.smoothtp;
+
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A distribution of values counted into fixed buckets, as exported to Prometheus.
+ * Recording is lock-free and only touches one bucket, so it can stay on the hot path.
+ */
+public class Histogram {
+    private final double[] bounds;
+    // One bucket per upper bound, plus one for everything above the last bound
+    private final LongAdder[] buckets;
+    private final LongAdder count = new LongAdder();
+    private final DoubleAdder sum = new DoubleAdder();
+
+    /**
+     * Creates an empty histogram
+     * @param bounds The inclusive upper bound of each bucket, in increasing order
+     */
+    public Histogram(double... bounds) {
+        this.bounds = bounds.clone();
+        this.buckets = new LongAdder[bounds.length + 1];
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Counts a value in its bucket
+     * @param value The value to record
+     */
+    public void record(double value) {
+        int bucket = 0;
+        while (bucket < bounds.length && value > bounds[bucket]) {
+            bucket++;
+        }
+        buckets[bucket].increment();
+        count.increment();
+        sum.add(value);
+    }
+
+    /**
+     * @return The upper bound of each bucket, without the one above the last bound
+     */
+    public double[] getBounds() {
+        return bounds.clone();
+    }
+
+    /**
+     * @return How many values fell at or below each bound, then the total, like Prometheus buckets
+     */
+    public long[] getCumulativeCounts() {
+        long[] counts = new long[buckets.length];
+        long total = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            total += buckets[i].sum();
+            counts[i] = total;
+        }
+        return counts;
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public double getSum() {
+        return sum.sum();
+    }
+
+    /**
+     * @return The mean of the recorded values, 0 if there are none
+     */
+    public double getMean() {
+        long n = count.sum();
+        return n == 0 ? 0.0 : sum.sum() / n;
+    }
+
+    /**
+     * Estimates a percentile by the bound of the bucket it falls in
+     * @param percentile The percentile, between 0 and 1
+     * @return The upper bound of that bucket, infinity if above the last bound, 0 if empty
+     */
+    public double getPercentile(double percentile) {
+        long[] counts = getCumulativeCounts();
+        long total = counts[counts.length - 1];
+        if (total == 0) {
+            return 0.0;
+        }
+        long rank = (long) Math.ceil(percentile * total);
+        for (int i = 0; i < bounds.length; i++) {
+            if (counts[i] >= rank) {
+                return bounds[i];
+            }
+        }
+        return Double.POSITIVE_INFINITY;
+    }
+}
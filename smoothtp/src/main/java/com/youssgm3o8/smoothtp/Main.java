@@ -1,144 +1,430 @@
 package com.youssgm3o8.smoothtp;
 
 import cn.nukkit.Player;
+import cn.nukkit.command.Command;
+import cn.nukkit.command.CommandSender;
 import cn.nukkit.event.EventHandler;
 import cn.nukkit.event.EventPriority;
 import cn.nukkit.event.Listener;
+import cn.nukkit.event.level.LevelUnloadEvent;
+import cn.nukkit.event.player.PlayerQuitEvent;
 import cn.nukkit.event.player.PlayerTeleportEvent;
+import cn.nukkit.event.player.PlayerTeleportEvent.TeleportCause;
+import cn.nukkit.level.Level;
 import cn.nukkit.level.Location;
 import cn.nukkit.network.protocol.LevelEventPacket;
 import cn.nukkit.network.protocol.SetTitlePacket;
 import cn.nukkit.plugin.PluginBase;
-import cn.nukkit.scheduler.TaskHandler;
-import cn.nukkit.utils.Config;
+import cn.nukkit.plugin.service.ServicePriority;
+import cn.nukkit.utils.TextFormat;
 
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class Main extends PluginBase implements Listener {
 
-    private final Map<UUID, TaskHandler> teleportTasks = new HashMap<>();
-    // Track players that are currently being processed for teleportation
-    private final Set<UUID> processingTeleport = new HashSet<>();
-    private int fadeDuration;
-    private int fadeInDelay;
-    private boolean playSound;
-    private String animationType;
-    private boolean debug;
-    private String teleportMessage;
+    // Players currently being teleported, and the animation of each
+    private final AnimationRegistry animations = new AnimationRegistry(this);
+    // Single task that drives every running teleport animation
+    private AnimationTicker animationTicker;
+    // Scheduler the ticker runs on, the server's own unless running headless
+    private AnimationScheduler animationScheduler;
+    // Current config snapshot, swapped as a whole when the config is loaded
+    private final AtomicReference<SmoothTpSettings> settings = new AtomicReference<>();
+    // Whether a config reload is being parsed in the background
+    private boolean reloading;
+    // Server-wide budget for running animations
+    private AdmissionController admissionController;
+    // Keyframe interval adapted to the measured tick time
+    private FrameRate frameRate;
+    // Teleport API registered for other plugins
+    private SmoothTp api;
+    // Running totals reported by /smoothtp stats, the metrics file and in debug mode
+    private final TeleportStats teleportStats = new TeleportStats();
+    // Periodic dump of the metrics to a file, when enabled
+    private MetricsExporter metricsExporter;
+    // Traces of the teleports picked for tracing, written off the main thread
+    private TraceLog traceLog;
     
     @Override
     public void onEnable() {
         // Save default config
         saveDefaultConfig();
         
-        // Load configuration
-        loadConfig();
+        // Load configuration and start driving animations from the server's scheduler
+        startAnimations(loadConfig(), AnimationScheduler.of(this));
+        traceLog.restart();
         
         // Register event listener
         this.getServer().getPluginManager().registerEvents(this, this);
         
+        // Expose the teleport API to other plugins
+        api = new SmoothTpService(this);
+        this.getServer().getServiceManager().register(SmoothTp.class, api, this, ServicePriority.NORMAL);
+        
+        // Write the metrics file if enabled
+        metricsExporter = new MetricsExporter(this);
+        metricsExporter.restart();
+        
         // Log plugin enabled
         this.getLogger().info("SmoothTP has been enabled! Enjoy smooth teleportation experiences.");
         
         // Debug info
-        if (debug) {
+        SmoothTpSettings settings = getSettings();
+        if (settings.isDebug()) {
+            String animationType = settings.getAnimationType();
             this.getLogger().info("Debug mode enabled");
             this.getLogger().info("Animation type: " + animationType);
-            this.getLogger().info("Play sound: " + playSound);
+            this.getLogger().info("Play sound: " + settings.isPlaySound());
             
             if (animationType.equals("TITLE") || animationType.equals("BOTH")) {
-                this.getLogger().info("Title fade duration: " + fadeDuration + " ticks");
-                this.getLogger().info("Title fade-in delay: " + fadeInDelay + " ticks");
+                this.getLogger().info("Title fade duration: " + settings.getFadeDuration() + " ticks");
+                this.getLogger().info("Title fade-in delay: " + settings.getFadeInDelay() + " ticks");
             }
             
             if (animationType.equals("GTA") || animationType.equals("BOTH")) {
-                this.getLogger().info("GTA up duration: " + getConfig().getInt("gta.up-duration") + " ticks");
-                this.getLogger().info("GTA up offset: " + getConfig().getDouble("gta.up-offset") + " blocks");
+                this.getLogger().info("GTA up duration: " + settings.getUpDuration() + " ticks");
+                this.getLogger().info("GTA up offset: " + settings.getUpOffset() + " blocks");
+                this.getLogger().info("GTA easing: " + settings.getEasing());
+                this.getLogger().info("GTA backend: " + (settings.isCameraOnly() ? "CAMERA_ONLY" : "ENTITY"));
+                this.getLogger().info("Packet batching: " + settings.isBatchPackets());
+                this.getLogger().info("Entity encoding: " + (settings.isDeltaEncoding() ? "DELTA" : "ABSOLUTE"));
+                this.getLogger().info("Chunk prewarming: " + settings.isPrewarmChunks() + " (radius " + settings.getPrewarmRadius() + ")");
             }
         }
     }
     
-    private void loadConfig() {
-        Config config = getConfig();
+    private SmoothTpSettings loadConfig() {
+        List<String> warnings = new ArrayList<>();
+        SmoothTpSettings loaded = new SmoothTpSettings(getConfig(), warnings);
+        for (String warning : warnings) {
+            this.getLogger().warning(warning);
+        }
+        return loaded;
+    }
+    
+    /**
+     * Creates everything the animations need and starts the shared ticker.
+     * Nothing is registered with the server here, so the load simulation can run the plugin headless.
+     * @param loaded The settings to start with
+     * @param scheduler The scheduler driving the animations
+     */
+    void startAnimations(SmoothTpSettings loaded, AnimationScheduler scheduler) {
+        settings.set(loaded);
+        animationScheduler = scheduler;
+        
+        traceLog = new TraceLog(this);
+        admissionController = new AdmissionController(this);
+        frameRate = new FrameRate(this);
+        
+        // Start the shared animation ticker
+        animationTicker = new AnimationTicker(this);
+        animationTicker.start();
+    }
+    
+    @Override
+    public boolean onCommand(CommandSender sender, Command command, String label, String[] args) {
+        if (args.length != 1) {
+            return false;
+        }
         
-        // Load settings from config
-        fadeDuration = config.getInt("title.fade-duration", 15);
-        fadeInDelay = config.getInt("title.fade-in-delay", 5);
-        playSound = config.getBoolean("play-sound", true);
-        animationType = config.getString("animation-type", "GTA").toUpperCase();
-        debug = config.getBoolean("debug", false);
-        teleportMessage = config.getString("teleport-message", "");
+        if (args[0].equalsIgnoreCase("stats")) {
+            if (!sender.hasPermission("smoothtp.stats")) {
+                sender.sendMessage(TextFormat.RED + "You don't have permission to view SmoothTP stats.");
+                return true;
+            }
+            sendStats(sender);
+            return true;
+        }
         
-        // Validate animation type
-        if (!animationType.equals("TITLE") && !animationType.equals("GTA") && !animationType.equals("BOTH")) {
-            this.getLogger().warning("Invalid animation type: " + animationType + ". Defaulting to GTA.");
-            animationType = "GTA";
+        if (!args[0].equalsIgnoreCase("reload")) {
+            return false;
         }
         
-        // Validate fade duration
-        if (fadeDuration < 1) {
-            this.getLogger().warning("Invalid fade duration: " + fadeDuration + ". Defaulting to 15 ticks.");
-            fadeDuration = 15;
+        if (!sender.hasPermission("smoothtp.reload")) {
+            sender.sendMessage(TextFormat.RED + "You don't have permission to reload SmoothTP.");
+            return true;
         }
         
-        // Validate fade-in delay
-        if (fadeInDelay < 0) {
-            this.getLogger().warning("Invalid fade-in delay: " + fadeInDelay + ". Defaulting to 5 ticks.");
-            fadeInDelay = 5;
+        if (reloading) {
+            sender.sendMessage(TextFormat.YELLOW + "SmoothTP config is already being reloaded.");
+            return true;
         }
+        
+        // Parse off the main thread, the new settings are swapped in once complete
+        reloading = true;
+        sender.sendMessage(TextFormat.GRAY + "Reloading SmoothTP config...");
+        this.getServer().getScheduler().scheduleAsyncTask(this, new ConfigReloadTask(this, sender));
+        return true;
+    }
+    
+    /**
+     * Sends a summary of the teleport metrics
+     * @param sender Who asked for the stats
+     */
+    private void sendStats(CommandSender sender) {
+        TeleportStats stats = teleportStats;
+        Histogram packets = stats.getAnimationPackets();
+        Histogram bytes = stats.getAnimationBytes();
+        Histogram tickTime = stats.getTickTime();
+        Histogram stageDrift = stats.getStageDrift();
+        
+        sender.sendMessage(TextFormat.GOLD + "SmoothTP stats");
+        sender.sendMessage(TextFormat.GRAY + "Active: " + TextFormat.WHITE + animations.getActiveAnimations()
+                + " animations, " + animations.getActivePlayers() + " players");
+        sender.sendMessage(TextFormat.GRAY + "Animations: " + TextFormat.WHITE + stats.getAnimationsStarted()
+                + " started, " + stats.getAnimationsCompleted() + " completed, " + stats.getAnimationsFailed() + " failed");
+        sender.sendMessage(TextFormat.GRAY + "Admissions: " + TextFormat.WHITE + stats.getFullAdmissions() + " full, "
+                + stats.getShortenedAdmissions() + " shortened, " + stats.getInstantAdmissions() + " instant, "
+                + stats.getSkippedTeleports() + " skipped by profile");
+        sender.sendMessage(TextFormat.GRAY + "Retargets: " + TextFormat.WHITE + stats.getRetargets()
+                + " (" + stats.getCoalescedTeleports() + " coalesced)");
+        sender.sendMessage(TextFormat.GRAY + "Per animation: " + TextFormat.WHITE
+                + String.format("%.0f packets, %.0f bytes on average", packets.getMean(), bytes.getMean()));
+        sender.sendMessage(TextFormat.GRAY + "Tick time: " + TextFormat.WHITE
+                + String.format("%.3f ms average, p99 under %s ms", tickTime.getMean() * 1000.0,
+                        milliseconds(tickTime.getPercentile(0.99))));
+        sender.sendMessage(TextFormat.GRAY + "Stage drift: " + TextFormat.WHITE
+                + String.format("%.1f ms average, p99 under %s ms", stageDrift.getMean() * 1000.0,
+                        milliseconds(stageDrift.getPercentile(0.99))));
+        sender.sendMessage(TextFormat.GRAY + "Chunks ready at landing: " + TextFormat.WHITE + stats.getReadyLandings()
+                + "/" + stats.getPrewarmedLandings()
+                + String.format(" (%.0f%%)", stats.getChunkReadyRatio() * 100.0));
+    }
+    
+    private static String milliseconds(double seconds) {
+        return Double.isInfinite(seconds) ? "inf" : String.format("%.2f", seconds * 1000.0);
+    }
+    
+    /**
+     * Swaps in a new config snapshot. Teleports started from now on use it,
+     * running animations finish with the snapshot they started with.
+     * @param loaded The validated settings to use
+     */
+    public void applySettings(SmoothTpSettings loaded) {
+        settings.set(loaded);
+        // Tables for the previous durations are no longer needed by new animations
+        Easing.clearTables();
+        metricsExporter.restart();
+        traceLog.restart();
+        if (loaded.isDebug()) {
+            this.getLogger().info("Settings swapped, " + animationTicker.size() + " running animations keep their previous settings");
+        }
+    }
+    
+    /**
+     * Marks the background config reload as finished
+     */
+    void finishReload() {
+        reloading = false;
     }
     
     @EventHandler
     public void onPlayerTeleport(PlayerTeleportEvent event) {
-        Player player = event.getPlayer();
-        Location from = event.getFrom();
-        Location to = event.getTo();
+        if (requestTeleport(AnimatedPlayer.of(event.getPlayer()), event.getFrom(), event.getTo(), event.getCause())) {
+            // Cancel the original teleport event, the animation teleports the player when landing
+            event.setCancelled(true);
+        }
+    }
+    
+    /**
+     * Decides what happens to a teleport about to take place
+     * @param player The teleporting player
+     * @param from Where the player teleports from
+     * @param to Where the player teleports to
+     * @param cause Why the player teleports
+     * @return true if SmoothTP took the teleport over and the original one must not happen
+     */
+    boolean requestTeleport(AnimatedPlayer player, Location from, Location to, TeleportCause cause) {
+        // The animations' own teleports go through untouched
+        TransmissionProcess running = animations.getProcess(player.getUniqueId());
+        Animation animation = animations.get(player.getUniqueId());
+        if ((running != null && running.isTeleporting())
+                || (animation instanceof GroupTeleport && ((GroupTeleport) animation).isTeleporting())) {
+            return false;
+        }
+        
+        // Skip short teleports and the causes that aren't animated, before any animation state is created.
+        // During an animation they don't redirect it either, like an ender pearl or an anti-cheat setback.
+        SmoothTpSettings settings = getSettings();
+        double profileScale = settings.getProfiles().timeScale(cause, from, to);
+        if (profileScale == TeleportProfiles.INSTANT) {
+            teleportStats.recordSkipped();
+            return false;
+        }
+        
+        // A teleport during an animation redirects it instead of starting another one
+        if (running != null) {
+            return running.retarget(to);
+        }
+        
+        // A member sent elsewhere leaves their group, which would otherwise move them back at landing
+        if (animation instanceof GroupTeleport) {
+            animations.cancel(player.getUniqueId());
+        }
         
         // Skip if player is already being processed
-        if (isProcessingTeleport(player.getUniqueId())) {
-            return;
+        if (animations.isTeleporting(player.getUniqueId())) {
+            return false;
         }
         
-        // Skip for specific teleport causes
-        if (event.getCause() == PlayerTeleportEvent.TeleportCause.ENDER_PEARL ||
-            event.getCause() == PlayerTeleportEvent.TeleportCause.CHORUS_FRUIT) {
-            return;
+        return startAnimation(player, from, to, profileScale) != null;
+    }
+    
+    /**
+     * Starts an animated teleport, unless the animation budget or settings call for an instant one
+     * @param player The player to teleport
+     * @param from Where the player teleports from
+     * @param to Where the player teleports to
+     * @param profileScale The time scale chosen by the teleport's profile
+     * @return The running animation, or null if the player should be teleported instantly
+     */
+    TransmissionProcess startAnimation(AnimatedPlayer player, Location from, Location to, double profileScale) {
+        SmoothTpSettings settings = getSettings();
+        
+        // Unless animated, cross-world teleports just use instant teleportation
+        boolean isCrossWorld = from.getLevel() != to.getLevel();
+        if (isCrossWorld && !settings.isAnimateCrossWorld()) {
+            return null;
         }
         
-        // Check if this is a cross-world teleport
-        boolean isCrossWorld = !from.getLevel().getName().equals(to.getLevel().getName());
+        // Over budget, let the teleport happen without an animation
+        AdmissionController.Decision decision = admissionController.admit();
+        if (decision == AdmissionController.Decision.INSTANT) {
+            if (isDebug()) {
+                this.getLogger().info("Animation budget exceeded, teleporting " + player.getName() + " instantly");
+            }
+            return null;
+        }
+        double timeScale = decision == AdmissionController.Decision.SHORTENED
+                ? profileScale * settings.getShortenedScale()
+                : profileScale;
         
         try {
-            // Add player to processing list
-            addProcessingPlayer(player.getUniqueId());
-            
-            // For cross-world teleports, just use instant teleportation
-            if (isCrossWorld) {
-                // Use default teleportation for cross-world teleports
-                player.teleport(to);
-                removeProcessingPlayer(player.getUniqueId());
+            // Use GTA-style animation, switching level once the destination is ready
+            return new TransmissionProcess(this, player, to, timeScale);
+        } catch (Exception e) {
+            getLogger().error("Error starting teleport animation: " + e.getMessage());
+            // Clean up, the player is teleported directly instead
+            animations.cancel(player.getUniqueId());
+            return null;
+        }
+    }
+    
+    /**
+     * Completes a teleport requested through SmoothTP and calls its completion event
+     * @param player The teleported player
+     * @param destination Where the player was teleported to
+     * @param completion The future to complete
+     * @param result How the teleport ended
+     * @param error The cause of a failure, or null
+     */
+    void completeTeleport(AnimatedPlayer player, Location destination, CompletableFuture<TeleportResult> completion,
+                          TeleportResult result, Throwable error) {
+        player.callCompleteEvent(destination, result);
+        
+        if (result == TeleportResult.FAILED) {
+            completion.completeExceptionally(error != null ? error
+                    : new IllegalStateException("Teleport of " + player.getName() + " failed"));
+        } else {
+            completion.complete(result);
+        }
+    }
+    
+    /**
+     * Teleports several players to the same destination with one shared animation.
+     * Players that are already teleporting, or not in the same level as the first one, are left out.
+     * @param players The players to teleport, the first one leads the camera
+     * @param destination The destination of every player
+     * @return The future of each player that was teleported, completed when they are at the destination
+     */
+    public Map<Player, CompletableFuture<TeleportResult>> teleportGroup(Collection<Player> players, Location destination) {
+        List<Player> members = new ArrayList<>();
+        Level level = null;
+        for (Player player : players) {
+            if (!player.isOnline() || (level != null && player.getLevel() != level)) {
+                continue;
+            }
+            // Reserving also leaves out duplicates and players already teleporting
+            if (animations.reserve(player.getUniqueId())) {
+                members.add(player);
+                level = player.getLevel();
+            }
+        }
+        Map<Player, CompletableFuture<TeleportResult>> completions = new LinkedHashMap<>();
+        if (members.isEmpty()) {
+            return completions;
+        }
+        
+        SmoothTpSettings settings = getSettings();
+        boolean isCrossWorld = level != destination.getLevel();
+        boolean animated = !isCrossWorld || settings.isAnimateCrossWorld();
+        // Every member is animated, so every member counts towards the budget
+        AdmissionController.Decision decision = animated
+                ? admissionController.admit(members.size())
+                : AdmissionController.Decision.INSTANT;
+        
+        try {
+            if (decision == AdmissionController.Decision.INSTANT) {
+                for (Player member : members) {
+                    completions.put(member, teleportInstantly(member, destination));
+                }
             } else {
-                // Cancel the original teleport event
-                event.setCancelled(true);
-                
-                // Use normal GTA-style animation for same-world teleports
-                new TransmissionProcess(this, player, to);
+                double timeScale = decision == AdmissionController.Decision.SHORTENED
+                        ? settings.getShortenedScale()
+                        : 1.0;
+                // The group registers its members, which then no longer need reserving
+                GroupTeleport group = new GroupTeleport(this, members, destination, timeScale);
+                for (int i = 0; i < members.size(); i++) {
+                    completions.put(members.get(i), group.getCompletions().get(i));
+                }
             }
         } catch (Exception e) {
-            getLogger().error("Error starting teleport animation: " + e.getMessage());
-            // Clean up and do direct teleport if animation fails
-            removeProcessingPlayer(player.getUniqueId());
-            player.teleport(to);
+            getLogger().error("Error starting group teleport: " + e.getMessage());
+            for (Player member : members) {
+                // Stops a group that got registered, the reservation stays so the teleport below isn't animated
+                Animation group = animations.get(member.getUniqueId());
+                if (group != null) {
+                    group.cancel(member.getUniqueId());
+                }
+                if (!completions.containsKey(member)) {
+                    completions.put(member, teleportInstantly(member, destination));
+                }
+            }
+        } finally {
+            for (Player member : members) {
+                animations.release(member.getUniqueId());
+            }
+        }
+        return completions;
+    }
+    
+    /**
+     * Teleports a reserved player without an animation and reports it like any SmoothTP teleport
+     * @return The future of the teleport, already completed
+     */
+    private CompletableFuture<TeleportResult> teleportInstantly(Player player, Location destination) {
+        CompletableFuture<TeleportResult> completion = new CompletableFuture<>();
+        if (player.teleport(destination)) {
+            completeTeleport(AnimatedPlayer.of(player), destination, completion, TeleportResult.INSTANT, null);
+        } else {
+            completeTeleport(AnimatedPlayer.of(player), destination, completion, TeleportResult.FAILED,
+                    new IllegalStateException("Teleport of " + player.getName() + " was cancelled"));
         }
+        return completion;
     }
     
     private void startFadeOut(Player player) {
+        SmoothTpSettings settings = getSettings();
+        
         // Play teleport sound if enabled
-        if (playSound) {
+        if (settings.isPlaySound()) {
             LevelEventPacket soundPacket = new LevelEventPacket();
             soundPacket.evid = LevelEventPacket.EVENT_SOUND_ENDERMAN_TELEPORT;
             soundPacket.x = (float) player.getX();
@@ -149,21 +435,23 @@ public class Main extends PluginBase implements Listener {
         }
         
         // Use sendTitle for fade out effect if using title animation
-        if (animationType.equals("TITLE") || animationType.equals("BOTH")) {
+        if (settings.getAnimationType().equals("TITLE") || settings.getAnimationType().equals("BOTH")) {
             // Send a title with a black screen. '§0' is the Minecraft color code for black.
-            player.sendTitle("§0", "", 0, fadeDuration, 0);
+            player.sendTitle("§0", "", 0, settings.getFadeDuration(), 0);
         }
     }
     
     private void startFadeIn(Player player) {
+        SmoothTpSettings settings = getSettings();
+        
         // Use sendTitle for fade in effect if using title animation
-        if (animationType.equals("TITLE") || animationType.equals("BOTH")) {
+        if (settings.getAnimationType().equals("TITLE") || settings.getAnimationType().equals("BOTH")) {
             // Clear the black screen by sending an empty title
-            player.sendTitle("", "", 0, fadeDuration, 0);
+            player.sendTitle("", "", 0, settings.getFadeDuration(), 0);
         }
         
         // Play teleport sound at new location if enabled
-        if (playSound) {
+        if (settings.isPlaySound()) {
             LevelEventPacket soundPacket = new LevelEventPacket();
             soundPacket.evid = LevelEventPacket.EVENT_SOUND_ENDERMAN_TELEPORT;
             soundPacket.x = (float) player.getX();
@@ -179,51 +467,135 @@ public class Main extends PluginBase implements Listener {
      * @return true if debug mode is enabled
      */
     public boolean isDebug() {
-        return debug;
+        return getSettings().isDebug();
+    }
+    
+    /**
+     * Gets the current config snapshot. Animations keep the snapshot they started with.
+     * @return The current settings
+     */
+    public SmoothTpSettings getSettings() {
+        return settings.get();
+    }
+    
+    /**
+     * Gets the teleport API, also available from the server's service manager
+     * @return The teleport API
+     */
+    public SmoothTp getApi() {
+        return api;
+    }
+    
+    /**
+     * Gets the admission controller that enforces the animation budget
+     * @return The admission controller
+     */
+    public AdmissionController getAdmissionController() {
+        return admissionController;
+    }
+    
+    /**
+     * Gets the adaptive frame rate shared by all animations
+     * @return The frame rate
+     */
+    public FrameRate getFrameRate() {
+        return frameRate;
+    }
+    
+    /**
+     * Gets the running teleport statistics
+     * @return The plugin-wide statistics
+     */
+    public TeleportStats getTeleportStats() {
+        return teleportStats;
+    }
+    
+    /**
+     * Gets the exporter writing the metrics file
+     * @return The metrics exporter
+     */
+    public MetricsExporter getMetricsExporter() {
+        return metricsExporter;
+    }
+    
+    /**
+     * Gets the trace log deciding which teleports are traced
+     * @return The trace log
+     */
+    public TraceLog getTraceLog() {
+        return traceLog;
+    }
+    
+    /**
+     * Gets the scheduler animations are driven from
+     * @return The animation scheduler
+     */
+    public AnimationScheduler getAnimationScheduler() {
+        return animationScheduler;
+    }
+    
+    /**
+     * Gets the ticker that drives all running animations
+     * @return The shared animation ticker
+     */
+    public AnimationTicker getAnimationTicker() {
+        return animationTicker;
     }
     
     @Override
     public void onDisable() {
-        // Cancel all pending teleport tasks
-        for (TaskHandler task : teleportTasks.values()) {
-            task.cancel();
+        // Release every animation in flight, showing the players again and snapping their camera back
+        animations.cancelAll();
+        
+        // Stop driving animations
+        if (animationTicker != null) {
+            animationTicker.stop();
+        }
+        
+        if (metricsExporter != null) {
+            metricsExporter.stop();
+        }
+        
+        // Write the traces of the animations cancelled above
+        if (traceLog != null) {
+            traceLog.stop();
         }
-        teleportTasks.clear();
-        processingTeleport.clear();
+        
+        this.getServer().getServiceManager().cancel(this);
         
         this.getLogger().info("SmoothTP has been disabled.");
     }
     
     /**
-     * Removes a player from the processing set
-     * @param playerId The UUID of the player to remove
+     * Releases the animation of a player who leaves, kicks included
      */
-    public void removeProcessingPlayer(UUID playerId) {
-        if (processingTeleport.contains(playerId)) {
-            processingTeleport.remove(playerId);
-            if (debug) {
-                this.getLogger().info("Removed player " + playerId + " from processing list");
-            }
-        }
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerQuit(PlayerQuitEvent event) {
+        animations.cancel(event.getPlayer().getUniqueId());
     }
     
     /**
-     * Checks if a player is currently being processed for teleportation
-     * @param playerId The UUID of the player to check
-     * @return true if the player is being processed, false otherwise
+     * Releases the animations from or to a level that is unloaded
      */
-    public boolean isProcessingTeleport(UUID playerId) {
-        return processingTeleport.contains(playerId);
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onLevelUnload(LevelUnloadEvent event) {
+        animations.cancelIn(event.getLevel());
     }
     
     /**
-     * Adds a player to the processing set
-     * @param playerId The UUID of the player to add
+     * Gets the registry of players currently being teleported
+     * @return The animation registry
      */
-    public void addProcessingPlayer(UUID playerId) {
-        processingTeleport.add(playerId);
-        if (debug) {
-            this.getLogger().info("Added player " + playerId + " to processing list");
-        }
+    public AnimationRegistry getAnimations() {
+        return animations;
+    }
+    
+    /**
+     * Checks if a player is currently being processed for teleportation
+     * @param playerId The UUID of the player to check
+     * @return true if the player is being processed, false otherwise
+     */
+    public boolean isProcessingTeleport(UUID playerId) {
+        return animations.isTeleporting(playerId);
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,189 @@
+package com.youssgm3o8.smoothtp;
+
+import cn.nukkit.scheduler.AsyncTask;
+import cn.nukkit.scheduler.TaskHandler;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Locale;
+
+/**
+ * Periodically writes the plugin's metrics to a file in the Prometheus text format.
+ * The metrics are read on the main thread, where the gauges are updated, and the
+ * file is written by an async worker. The file is replaced atomically, so a scraper
+ * never reads it half written.
+ */
+public class MetricsExporter implements Runnable {
+    private final Main plugin;
+    private TaskHandler task;
+    private File file;
+    // Whether the previous dump is still being written
+    private volatile boolean writing;
+
+    /**
+     * Creates an exporter following the current settings
+     * @param plugin The plugin instance
+     */
+    public MetricsExporter(Main plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * Starts or stops the periodic dump to match the current settings
+     */
+    public void restart() {
+        stop();
+
+        SmoothTpSettings settings = plugin.getSettings();
+        if (!settings.isMetricsEnabled()) {
+            return;
+        }
+
+        file = new File(settings.getMetricsFile());
+        if (!file.isAbsolute()) {
+            file = new File(plugin.getDataFolder(), settings.getMetricsFile());
+        }
+        int period = settings.getMetricsInterval() * 20;
+        task = plugin.getServer().getScheduler().scheduleDelayedRepeatingTask(plugin, this, period, period);
+    }
+
+    /**
+     * Stops the periodic dump
+     */
+    public void stop() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+    }
+
+    @Override
+    public void run() {
+        if (writing) {
+            // The disk can't keep up, skip this dump rather than piling up writes
+            return;
+        }
+
+        writing = true;
+        String text = render();
+        File target = file;
+        plugin.getServer().getScheduler().scheduleAsyncTask(plugin, new AsyncTask() {
+            @Override
+            public void onRun() {
+                try {
+                    write(target, text);
+                } catch (IOException e) {
+                    plugin.getLogger().warning("Could not write metrics to " + target + ": " + e.getMessage());
+                } finally {
+                    writing = false;
+                }
+            }
+        });
+    }
+
+    private static void write(File target, String text) throws IOException {
+        Path path = target.toPath();
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        Files.write(temp, text.getBytes(StandardCharsets.UTF_8));
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Renders every metric in the Prometheus text format
+     * @return The exposition text
+     */
+    public String render() {
+        TeleportStats stats = plugin.getTeleportStats();
+        AnimationRegistry animations = plugin.getAnimations();
+        StringBuilder out = new StringBuilder(4096);
+
+        gauge(out, "smoothtp_active_animations", "Animations currently running, a group counting once",
+                animations.getActiveAnimations());
+        gauge(out, "smoothtp_active_players", "Players currently animating", animations.getActivePlayers());
+
+        counter(out, "smoothtp_animations_started_total", "Animations started", stats.getAnimationsStarted());
+        counter(out, "smoothtp_animations_completed_total", "Animations that played to the end",
+                stats.getAnimationsCompleted());
+        counter(out, "smoothtp_animations_failed_total", "Animations stopped by an error or cancelled",
+                stats.getAnimationsFailed());
+
+        out.append("# HELP smoothtp_admissions_total Teleports by admission decision\n");
+        out.append("# TYPE smoothtp_admissions_total counter\n");
+        out.append("smoothtp_admissions_total{decision=\"full\"} ").append(stats.getFullAdmissions()).append('\n');
+        out.append("smoothtp_admissions_total{decision=\"shortened\"} ").append(stats.getShortenedAdmissions()).append('\n');
+        out.append("smoothtp_admissions_total{decision=\"instant\"} ").append(stats.getInstantAdmissions()).append('\n');
+
+        counter(out, "smoothtp_teleports_skipped_total", "Teleports their profile left unanimated",
+                stats.getSkippedTeleports());
+        counter(out, "smoothtp_retargets_total", "Teleports redirecting a running animation", stats.getRetargets());
+        counter(out, "smoothtp_retargets_coalesced_total", "Retargets replacing one not applied yet",
+                stats.getCoalescedTeleports());
+
+        counter(out, "smoothtp_landings_prewarmed_total", "Landings at a prewarmed destination",
+                stats.getPrewarmedLandings());
+        counter(out, "smoothtp_landings_chunks_ready_total", "Prewarmed landings whose chunks were ready",
+                stats.getReadyLandings());
+        gauge(out, "smoothtp_chunk_ready_ratio", "Share of prewarmed landings whose chunks were ready",
+                stats.getChunkReadyRatio());
+
+        counter(out, "smoothtp_visibility_packets_sent_total", "Visibility updates sent to viewers",
+                stats.getVisibilityPacketsSent());
+        counter(out, "smoothtp_visibility_packets_saved_total", "Visibility updates saved over broadcasting",
+                stats.getVisibilityPacketsSaved());
+        counter(out, "smoothtp_camera_only_packets_saved_total", "Entity packets skipped in camera-only mode",
+                stats.getPacketsSaved());
+
+        histogram(out, "smoothtp_animation_packets", "Packets sent to the players of an animation",
+                stats.getAnimationPackets());
+        histogram(out, "smoothtp_animation_bytes", "Encoded bytes sent to the players of an animation",
+                stats.getAnimationBytes());
+        histogram(out, "smoothtp_tick_seconds", "Main-thread time of each animation tick", stats.getTickTime());
+        histogram(out, "smoothtp_stage_drift_seconds", "Delay of stage starts behind a 20 TPS schedule",
+                stats.getStageDrift());
+        return out.toString();
+    }
+
+    private static void gauge(StringBuilder out, String name, String help, double value) {
+        header(out, name, help, "gauge");
+        out.append(name).append(' ').append(number(value)).append('\n');
+    }
+
+    private static void counter(StringBuilder out, String name, String help, long value) {
+        header(out, name, help, "counter");
+        out.append(name).append(' ').append(value).append('\n');
+    }
+
+    private static void histogram(StringBuilder out, String name, String help, Histogram histogram) {
+        header(out, name, help, "histogram");
+        double[] bounds = histogram.getBounds();
+        long[] counts = histogram.getCumulativeCounts();
+        for (int i = 0; i < bounds.length; i++) {
+            out.append(name).append("_bucket{le=\"").append(number(bounds[i])).append("\"} ")
+                    .append(counts[i]).append('\n');
+        }
+        long total = counts[counts.length - 1];
+        out.append(name).append("_bucket{le=\"+Inf\"} ").append(total).append('\n');
+        out.append(name).append("_sum ").append(number(histogram.getSum())).append('\n');
+        out.append(name).append("_count ").append(total).append('\n');
+    }
+
+    private static void header(StringBuilder out, String name, String help, String type) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static String number(double value) {
+        if (value == Math.rint(value) && !Double.isInfinite(value)) {
+            return Long.toString((long) value);
+        }
+        return String.format(Locale.ROOT, "%.6g", value);
+    }
+}
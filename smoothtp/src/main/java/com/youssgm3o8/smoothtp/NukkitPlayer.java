@@ -0,0 +1,107 @@
+package com.youssgm3o8.smoothtp;
+
+import cn.nukkit.Player;
+import cn.nukkit.Server;
+import cn.nukkit.level.Location;
+import cn.nukkit.network.protocol.DataPacket;
+import cn.nukkit.potion.Effect;
+
+import java.util.Collection;
+import java.util.UUID;
+
+/**
+ * An {@link AnimatedPlayer} backed by a player connected to the server
+ */
+final class NukkitPlayer implements AnimatedPlayer {
+    private final Player player;
+    // The player's own batch target, reused for every batch
+    private final Player[] target;
+
+    NukkitPlayer(Player player) {
+        this.player = player;
+        this.target = new Player[] {player};
+    }
+
+    @Override
+    public long getId() {
+        return player.getId();
+    }
+
+    @Override
+    public UUID getUniqueId() {
+        return player.getUniqueId();
+    }
+
+    @Override
+    public String getName() {
+        return player.getName();
+    }
+
+    @Override
+    public Location getLocation() {
+        return player.getLocation();
+    }
+
+    @Override
+    public boolean isOnline() {
+        return player.isOnline();
+    }
+
+    @Override
+    public int getPing() {
+        return player.getPing();
+    }
+
+    @Override
+    public void dataPacket(DataPacket packet) {
+        player.dataPacket(packet);
+    }
+
+    @Override
+    public void batchPackets(DataPacket[] packets) {
+        player.getServer().batchPackets(target, packets);
+    }
+
+    @Override
+    public int broadcastToViewers(DataPacket packet) {
+        // Players that don't have this one spawned never render it, so they are skipped
+        Collection<Player> viewers = player.getViewers().values();
+        if (!viewers.isEmpty()) {
+            Server.broadcastPacket(viewers, packet);
+        }
+        return viewers.size();
+    }
+
+    @Override
+    public int getOtherPlayers() {
+        return Math.max(0, player.getServer().getOnlinePlayers().size() - 1);
+    }
+
+    @Override
+    public boolean teleport(Location to) {
+        return player.teleport(to);
+    }
+
+    @Override
+    public void protectFromFall(int ticks) {
+        player.addEffect(Effect.getEffect(Effect.DAMAGE_RESISTANCE)
+                .setDuration(ticks)
+                .setAmplifier(4)  // Level 5 resistance (immunity)
+                .setVisible(false));  // Hide particles
+    }
+
+    @Override
+    public void sendTitle(String title, String subtitle, int fadeIn, int stay, int fadeOut) {
+        player.sendTitle(title, subtitle, fadeIn, stay, fadeOut);
+    }
+
+    @Override
+    public void sendMessage(String message) {
+        player.sendMessage(message);
+    }
+
+    @Override
+    public void callCompleteEvent(Location destination, TeleportResult result) {
+        player.getServer().getPluginManager().callEvent(new SmoothTeleportCompleteEvent(player, destination, result));
+    }
+}
@@ -0,0 +1,120 @@
+package com.youssgm3o8.smoothtp;
+
+import cn.nukkit.network.protocol.DataPacket;
+
+/**
+ * Collects the packets an animation produces for its player during one ticker pass
+ * and sends them as a single batch, so they are compressed and encrypted once.
+ * Outside of a pass, or when batching is disabled, packets are sent straight away.
+ * <p>
+ * The batch itself does not allocate once its arrays exist, but the server does:
+ * Server.batchPackets builds a new BatchPacket and its compressed payload for every
+ * batch sent. That is the only allocation left per player and tick, and only for players
+ * with more than one packet in the tick.
+ */
+public class PacketBatch {
+    // Packets produced for one player in a single tick; more than this is flushed early
+    private static final int CAPACITY = 8;
+
+    private final AnimatedPlayer player;
+    private final boolean enabled;
+    private final DataPacket[] pending = new DataPacket[CAPACITY];
+    // Exactly sized arrays handed to the server, reused between ticks
+    private final DataPacket[][] batches = new DataPacket[CAPACITY + 1][];
+    private boolean open;
+    private int size;
+    // Everything sent to the player through this batch so far
+    private long packets;
+    private long bytes;
+
+    /**
+     * Creates a batch for a player
+     * @param player The player receiving the packets
+     * @param enabled false to always send packets one by one
+     */
+    public PacketBatch(AnimatedPlayer player, boolean enabled) {
+        this.player = player;
+        this.enabled = enabled;
+    }
+
+    /**
+     * Starts collecting packets for a ticker pass
+     */
+    public void begin() {
+        open = enabled;
+    }
+
+    /**
+     * Sends a packet, or queues it until {@link #flush()} while a pass is in progress
+     * @param packet The packet to send
+     */
+    public void send(DataPacket packet) {
+        if (!open) {
+            player.dataPacket(packet);
+            count(packet);
+            return;
+        }
+
+        if (size == CAPACITY) {
+            sendPending();
+        }
+        pending[size++] = packet;
+    }
+
+    /**
+     * Sends everything collected during the pass and stops collecting
+     */
+    public void flush() {
+        open = false;
+        sendPending();
+    }
+
+    private void sendPending() {
+        if (size == 0) {
+            return;
+        }
+
+        if (size == 1) {
+            // Nothing to gain from wrapping a single packet
+            player.dataPacket(pending[0]);
+        } else {
+            DataPacket[] batch = batches[size];
+            if (batch == null) {
+                batch = new DataPacket[size];
+                batches[size] = batch;
+            }
+            System.arraycopy(pending, 0, batch, 0, size);
+            player.batchPackets(batch);
+        }
+
+        for (int i = 0; i < size; i++) {
+            count(pending[i]);
+            pending[i] = null;
+        }
+        size = 0;
+    }
+
+    /**
+     * Counts a packet that was sent, with its size once encoded for sending
+     */
+    private void count(DataPacket packet) {
+        packets++;
+        if (packet.isEncoded) {
+            bytes += packet.getCount();
+        }
+    }
+
+    /**
+     * @return The number of packets sent through this batch
+     */
+    public long getPackets() {
+        return packets;
+    }
+
+    /**
+     * @return The number of encoded bytes sent through this batch
+     */
+    public long getBytes() {
+        return bytes;
+    }
+}
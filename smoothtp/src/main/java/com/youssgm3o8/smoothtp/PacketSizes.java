@@ -0,0 +1,22 @@
+package com.youssgm3o8.smoothtp;
+
+/**
+ * Approximate uncompressed wire sizes, in bytes, of the packets sent by an animation.
+ * These are estimates for statistics only: they include the packet ID and assume
+ * the negative runtime ID of the virtual entity, which always encodes to 10 bytes.
+ */
+public final class PacketSizes {
+    public static final int ADD_ENTITY = 96;
+    public static final int SET_ENTITY_DATA = 44;
+    public static final int MOB_EFFECT = 24;
+    public static final int REMOVE_ENTITY = 11;
+    public static final int MOVE_ENTITY_ABSOLUTE = 27;
+    // Delta movement: ID, runtime ID and flags, plus each component that changed
+    public static final int MOVE_ENTITY_DELTA = 13;
+    public static final int DELTA_POSITION = 4;
+    public static final int DELTA_ROTATION = 1;
+    public static final int MOVE_PLAYER = 40;
+
+    private PacketSizes() {
+    }
+}
@@ -0,0 +1,46 @@
+package com.youssgm3o8.smoothtp;
+
+import cn.nukkit.Player;
+import cn.nukkit.event.HandlerList;
+import cn.nukkit.event.player.PlayerEvent;
+import cn.nukkit.level.Location;
+
+/**
+ * Called on the main thread when a teleport handled by SmoothTP has put the player
+ * at their destination, or has failed to.
+ */
+public class SmoothTeleportCompleteEvent extends PlayerEvent {
+    private static final HandlerList handlers = new HandlerList();
+
+    private final Location destination;
+    private final TeleportResult result;
+
+    public static HandlerList getHandlers() {
+        return handlers;
+    }
+
+    /**
+     * @param player The teleported player
+     * @param destination Where the player was teleported to
+     * @param result How the teleport ended
+     */
+    public SmoothTeleportCompleteEvent(Player player, Location destination, TeleportResult result) {
+        this.player = player;
+        this.destination = destination;
+        this.result = result;
+    }
+
+    /**
+     * @return Where the player was teleported to
+     */
+    public Location getDestination() {
+        return destination;
+    }
+
+    /**
+     * @return How the teleport ended
+     */
+    public TeleportResult getResult() {
+        return result;
+    }
+}
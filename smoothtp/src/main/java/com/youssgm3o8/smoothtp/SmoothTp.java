@@ -0,0 +1,46 @@
+package com.youssgm3o8.smoothtp;
+
+import cn.nukkit.Player;
+import cn.nukkit.level.Location;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Service API for other plugins, registered with the server's service manager.
+ * Futures are completed on the main thread, at landing for animated teleports
+ * and right away for instant ones. A {@link SmoothTeleportCompleteEvent} is called
+ * at the same time.
+ */
+public interface SmoothTp {
+
+    /**
+     * Teleports a player using the profile configured for plugin teleports
+     * @param player The player to teleport
+     * @param destination Where to teleport the player
+     * @return A future completed when the player is at the destination, or exceptionally if the teleport failed
+     */
+    CompletableFuture<TeleportResult> teleport(Player player, Location destination);
+
+    /**
+     * Teleports a player with a given profile.
+     * If the player is already animating, the running animation is redirected instead.
+     * Players in a group teleport can't be teleported until the group animation is over, the future fails.
+     * @param player The player to teleport
+     * @param destination Where to teleport the player
+     * @param profile How the teleport is animated
+     * @return A future completed when the player is at the destination, or exceptionally if the teleport failed
+     */
+    CompletableFuture<TeleportResult> teleport(Player player, Location destination, TeleportProfiles.Mode profile);
+
+    /**
+     * Teleports several players to the same destination with one shared animation.
+     * Players that are already teleporting, or not in the same level as the first one, are left out.
+     * A member teleported elsewhere during the animation leaves the group, and their future fails.
+     * @param players The players to teleport, the first one leads the camera
+     * @param destination The destination of every player
+     * @return The future of each player that was teleported, completed when they are at the destination
+     */
+    Map<Player, CompletableFuture<TeleportResult>> teleportGroup(Collection<Player> players, Location destination);
+}
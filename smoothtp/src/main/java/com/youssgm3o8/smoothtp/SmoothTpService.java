@@ -0,0 +1,96 @@
+package com.youssgm3o8.smoothtp;
+
+import cn.nukkit.Player;
+import cn.nukkit.event.player.PlayerTeleportEvent.TeleportCause;
+import cn.nukkit.level.Location;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The {@link SmoothTp} API backed by the plugin's animations.
+ * Must be called from the main thread, like any teleport.
+ */
+public class SmoothTpService implements SmoothTp {
+    private final Main plugin;
+
+    /**
+     * @param plugin The plugin instance
+     */
+    public SmoothTpService(Main plugin) {
+        this.plugin = plugin;
+    }
+
+    @Override
+    public CompletableFuture<TeleportResult> teleport(Player player, Location destination) {
+        return teleport(player, destination, null);
+    }
+
+    @Override
+    public CompletableFuture<TeleportResult> teleport(Player player, Location destination, TeleportProfiles.Mode profile) {
+        CompletableFuture<TeleportResult> completion = new CompletableFuture<>();
+        if (!player.isOnline()) {
+            completion.completeExceptionally(new IllegalStateException(player.getName() + " is not online"));
+            return completion;
+        }
+
+        AnimatedPlayer animated = AnimatedPlayer.of(player);
+        UUID playerId = player.getUniqueId();
+
+        // Already animating, redirect the running animation
+        AnimationRegistry animations = plugin.getAnimations();
+        TransmissionProcess running = animations.getProcess(playerId);
+        if (running != null && running.retarget(destination)) {
+            return running.getCompletion();
+        }
+
+        // A group can't be redirected for one member, and an instant teleport would be undone at landing
+        if (animations.get(playerId) != null && running == null) {
+            completion.completeExceptionally(new IllegalStateException(player.getName() + " is in a group teleport"));
+            return completion;
+        }
+
+        if (!animations.isTeleporting(playerId)) {
+            Location from = player.getLocation();
+            TeleportProfiles profiles = plugin.getSettings().getProfiles();
+            double profileScale = profile == null
+                    ? profiles.timeScale(TeleportCause.PLUGIN, from, destination)
+                    : profiles.timeScale(profile, from, destination);
+
+            if (profileScale != TeleportProfiles.INSTANT) {
+                TransmissionProcess process = plugin.startAnimation(animated, from, destination, profileScale);
+                if (process != null) {
+                    return process.getCompletion();
+                }
+            } else {
+                plugin.getTeleportStats().recordSkipped();
+            }
+        }
+
+        // Teleport right away, reserved so the teleport isn't animated again
+        boolean reserved = animations.reserve(playerId);
+        boolean teleported;
+        try {
+            teleported = player.teleport(destination);
+        } finally {
+            if (reserved) {
+                animations.release(playerId);
+            }
+        }
+
+        if (teleported) {
+            plugin.completeTeleport(animated, destination, completion, TeleportResult.INSTANT, null);
+        } else {
+            plugin.completeTeleport(animated, destination, completion, TeleportResult.FAILED,
+                    new IllegalStateException("Teleport of " + player.getName() + " was cancelled"));
+        }
+        return completion;
+    }
+
+    @Override
+    public Map<Player, CompletableFuture<TeleportResult>> teleportGroup(Collection<Player> players, Location destination) {
+        return plugin.teleportGroup(players, destination);
+    }
+}
@@ -0,0 +1,560 @@
+package com.youssgm3o8.smoothtp;
+
+import cn.nukkit.utils.Config;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * An immutable, validated snapshot of the plugin configuration.
+ * A snapshot is built once when the config is loaded and shared by every animation,
+ * so nothing has to be looked up or parsed from the YAML tree while teleporting.
+ */
+public final class SmoothTpSettings {
+    // General settings
+    private final int fadeDuration;
+    private final int fadeInDelay;
+    private final boolean playSound;
+    private final String animationType;
+    private final boolean debug;
+    private final String teleportMessage;
+
+    // GTA animation settings
+    private final int upDuration;
+    private final int fadeInDuration;
+    private final int stayDuration;
+    private final int fadeOutDuration;
+    private final int downDuration;
+    private final int downStayDuration;
+    private final double upOffset;
+    private final String easing;
+    private final boolean cameraOnly;
+    private final TeleportProfiles profiles;
+
+    // Performance settings
+    private final boolean batchPackets;
+    private final boolean deltaEncoding;
+    private final int deltaSnapshotInterval;
+    private final double deltaMaxJump;
+    private final boolean prewarmChunks;
+    private final int prewarmRadius;
+    private final int prewarmChunksPerTick;
+    private final int prewarmChunksPerServerTick;
+
+    // Cross-world settings
+    private final boolean animateCrossWorld;
+    private final int crossWorldTimeout;
+
+    // Server-wide animation budget
+    private final int maxActiveAnimations;
+    private final int maxPacketsPerTick;
+    private final double minTps;
+    private final boolean shortenWhenOverloaded;
+    private final double shortenedScale;
+
+    // Adaptive frame rate settings
+    private final boolean adaptiveFrames;
+    private final boolean pingAdaptiveFrames;
+    private final int maxFrameInterval;
+    private final double msPerStep;
+    private final int pingPerStep;
+
+    // Metrics settings
+    private final boolean metricsEnabled;
+    private final String metricsFile;
+    private final int metricsInterval;
+
+    // Trace settings
+    private final Set<String> tracedPlayers;
+    private final int traceSampleRate;
+    private final String traceFile;
+    private final int traceBufferSize;
+
+    /**
+     * Reads and validates a snapshot from a config.
+     * Invalid values are replaced with their default and reported.
+     * @param config The config to read
+     * @param warnings Receives a message for every invalid value
+     */
+    public SmoothTpSettings(Config config, List<String> warnings) {
+        // Load settings from config
+        int fadeDuration = config.getInt("title.fade-duration", 15);
+        int fadeInDelay = config.getInt("title.fade-in-delay", 5);
+        String animationType = config.getString("animation-type", "GTA").toUpperCase();
+        String easingName = config.getString("gta.easing", Easing.CUBIC);
+        String backend = config.getString("gta.backend", "ENTITY").toUpperCase();
+        String entityEncoding = config.getString("performance.entity-encoding", "ABSOLUTE").toUpperCase();
+        int deltaSnapshotInterval = config.getInt("performance.delta-snapshot-interval", 20);
+        double deltaMaxJump = config.getDouble("performance.delta-max-jump", 8.0);
+        int prewarmRadius = config.getInt("performance.prewarm-radius", 3);
+        int prewarmChunksPerTick = config.getInt("performance.prewarm-chunks-per-tick", 4);
+        int prewarmChunksPerServerTick = config.getInt("performance.prewarm-chunks-per-server-tick", 16);
+        int crossWorldTimeout = config.getInt("cross-world.timeout", 100);
+        int maxActive = config.getInt("limits.max-active-animations", 100);
+        int maxPacketsPerTick = config.getInt("limits.max-packets-per-tick", 400);
+        String policy = config.getString("limits.policy", "SHORTEN").toUpperCase();
+        double shortenedScale = config.getDouble("limits.shortened-scale", 0.35);
+        int maxFrameInterval = config.getInt("adaptive-frames.max-interval", 4);
+        double msPerStep = config.getDouble("adaptive-frames.ms-per-step", 15.0);
+        int pingPerStep = config.getInt("adaptive-frames.ping-per-step", 150);
+        String metricsFile = config.getString("metrics.file", "metrics.prom");
+        int metricsInterval = config.getInt("metrics.interval", 15);
+        int traceSampleRate = config.getInt("trace.sample-rate", 0);
+        String traceFile = config.getString("trace.file", "trace.log");
+        int traceBufferSize = config.getInt("trace.buffer-size", 4096);
+
+        this.playSound = config.getBoolean("play-sound", true);
+        this.debug = config.getBoolean("debug", false);
+        this.teleportMessage = config.getString("teleport-message", "");
+        this.upOffset = config.getDouble("gta.up-offset", 100.0);
+        this.batchPackets = config.getBoolean("performance.batch-packets", true);
+        this.prewarmChunks = config.getBoolean("performance.prewarm-chunks", true);
+        this.animateCrossWorld = config.getBoolean("cross-world.animate", true);
+        this.minTps = config.getDouble("limits.min-tps", 17.0);
+        this.adaptiveFrames = config.getBoolean("adaptive-frames.enabled", true);
+        this.pingAdaptiveFrames = config.getBoolean("adaptive-frames.ping-enabled", true);
+        this.metricsEnabled = config.getBoolean("metrics.enabled", false);
+
+        // Validate animation durations
+        this.upDuration = duration(config, "gta.up-duration", 40, warnings);
+        this.fadeInDuration = duration(config, "gta.fade-in-duration", 20, warnings);
+        this.stayDuration = duration(config, "gta.stay-duration", 20, warnings);
+        this.fadeOutDuration = duration(config, "gta.fade-out-duration", 40, warnings);
+        this.downDuration = duration(config, "gta.down-duration", 40, warnings);
+        this.downStayDuration = duration(config, "gta.down-stay-duration", 20, warnings);
+
+        // Validate animation type
+        if (!animationType.equals("TITLE") && !animationType.equals("GTA") && !animationType.equals("BOTH")) {
+            warnings.add("Invalid animation type: " + animationType + ". Defaulting to GTA.");
+            animationType = "GTA";
+        }
+        this.animationType = animationType;
+
+        // Validate fade duration
+        if (fadeDuration < 1) {
+            warnings.add("Invalid fade duration: " + fadeDuration + ". Defaulting to 15 ticks.");
+            fadeDuration = 15;
+        }
+        this.fadeDuration = fadeDuration;
+
+        // Validate fade-in delay
+        if (fadeInDelay < 0) {
+            warnings.add("Invalid fade-in delay: " + fadeInDelay + ". Defaulting to 5 ticks.");
+            fadeInDelay = 5;
+        }
+        this.fadeInDelay = fadeInDelay;
+
+        // Validate easing curve
+        String easing = Easing.resolve(easingName);
+        if (easing == null) {
+            warnings.add("Invalid easing curve: " + easingName + ". Defaulting to CUBIC.");
+            easing = Easing.CUBIC;
+        }
+        this.easing = easing;
+
+        // Validate animation backend
+        if (!backend.equals("ENTITY") && !backend.equals("CAMERA_ONLY")) {
+            warnings.add("Invalid animation backend: " + backend + ". Defaulting to ENTITY.");
+            backend = "ENTITY";
+        }
+        this.cameraOnly = backend.equals("CAMERA_ONLY");
+
+        // Distance and cause based profiles
+        this.profiles = new TeleportProfiles(config, warnings);
+
+        // Validate entity movement encoding
+        if (!entityEncoding.equals("ABSOLUTE") && !entityEncoding.equals("DELTA")) {
+            warnings.add("Invalid entity encoding: " + entityEncoding + ". Defaulting to ABSOLUTE.");
+            entityEncoding = "ABSOLUTE";
+        }
+        this.deltaEncoding = entityEncoding.equals("DELTA");
+
+        if (deltaSnapshotInterval < 1) {
+            warnings.add("Invalid delta snapshot interval: " + deltaSnapshotInterval + ". Defaulting to 20 frames.");
+            deltaSnapshotInterval = 20;
+        }
+        this.deltaSnapshotInterval = deltaSnapshotInterval;
+
+        if (deltaMaxJump <= 0) {
+            warnings.add("Invalid delta max jump: " + deltaMaxJump + ". Defaulting to 8 blocks.");
+            deltaMaxJump = 8.0;
+        }
+        this.deltaMaxJump = deltaMaxJump;
+
+        // Validate chunk prewarming
+        if (prewarmRadius < 0) {
+            warnings.add("Invalid prewarm radius: " + prewarmRadius + ". Defaulting to 3 chunks.");
+            prewarmRadius = 3;
+        }
+        this.prewarmRadius = prewarmRadius;
+
+        if (prewarmChunksPerTick < 1) {
+            warnings.add("Invalid prewarm chunks per tick: " + prewarmChunksPerTick + ". Defaulting to 4.");
+            prewarmChunksPerTick = 4;
+        }
+        this.prewarmChunksPerTick = prewarmChunksPerTick;
+
+        if (prewarmChunksPerServerTick < 1) {
+            warnings.add("Invalid prewarm chunks per server tick: " + prewarmChunksPerServerTick + ". Defaulting to 16.");
+            prewarmChunksPerServerTick = 16;
+        }
+        this.prewarmChunksPerServerTick = prewarmChunksPerServerTick;
+
+        // Validate cross-world timeout
+        if (crossWorldTimeout < 0) {
+            warnings.add("Invalid cross-world timeout: " + crossWorldTimeout + ". Defaulting to 100 ticks.");
+            crossWorldTimeout = 100;
+        }
+        this.crossWorldTimeout = crossWorldTimeout;
+
+        // Validate limits
+        if (maxActive < 0) {
+            warnings.add("Invalid max active animations: " + maxActive + ". Defaulting to 100.");
+            maxActive = 100;
+        }
+        this.maxActiveAnimations = maxActive;
+
+        if (maxPacketsPerTick < 1) {
+            warnings.add("Invalid max packets per tick: " + maxPacketsPerTick + ". Defaulting to 400.");
+            maxPacketsPerTick = 400;
+        }
+        this.maxPacketsPerTick = maxPacketsPerTick;
+
+        if (!policy.equals("SHORTEN") && !policy.equals("INSTANT")) {
+            warnings.add("Invalid limit policy: " + policy + ". Defaulting to SHORTEN.");
+            policy = "SHORTEN";
+        }
+        this.shortenWhenOverloaded = policy.equals("SHORTEN");
+
+        if (shortenedScale <= 0 || shortenedScale > 1) {
+            warnings.add("Invalid shortened scale: " + shortenedScale + ". Defaulting to 0.35.");
+            shortenedScale = 0.35;
+        }
+        this.shortenedScale = shortenedScale;
+
+        // Validate adaptive frame rate
+        if (maxFrameInterval < 1) {
+            warnings.add("Invalid max frame interval: " + maxFrameInterval + ". Defaulting to 4 ticks.");
+            maxFrameInterval = 4;
+        }
+        this.maxFrameInterval = maxFrameInterval;
+
+        if (msPerStep <= 0) {
+            warnings.add("Invalid ms per step: " + msPerStep + ". Defaulting to 15 ms.");
+            msPerStep = 15.0;
+        }
+        this.msPerStep = msPerStep;
+
+        if (pingPerStep < 1) {
+            warnings.add("Invalid ping per step: " + pingPerStep + ". Defaulting to 150 ms.");
+            pingPerStep = 150;
+        }
+        this.pingPerStep = pingPerStep;
+
+        // Validate metrics export
+        if (metricsFile.trim().isEmpty()) {
+            warnings.add("Invalid metrics file: it can't be empty. Defaulting to metrics.prom.");
+            metricsFile = "metrics.prom";
+        }
+        this.metricsFile = metricsFile.trim();
+
+        if (metricsInterval < 1) {
+            warnings.add("Invalid metrics interval: " + metricsInterval + ". Defaulting to 15 seconds.");
+            metricsInterval = 15;
+        }
+        this.metricsInterval = metricsInterval;
+
+        // Validate tracing, players are matched by name or UUID
+        Set<String> tracedPlayers = new HashSet<>();
+        List<String> players = config.getStringList("trace.players");
+        if (players != null) {
+            for (String player : players) {
+                if (!player.trim().isEmpty()) {
+                    tracedPlayers.add(player.trim().toLowerCase(Locale.ROOT));
+                }
+            }
+        }
+        this.tracedPlayers = Collections.unmodifiableSet(tracedPlayers);
+
+        if (traceSampleRate < 0) {
+            warnings.add("Invalid trace sample rate: " + traceSampleRate + ". Defaulting to 0, no sampling.");
+            traceSampleRate = 0;
+        }
+        this.traceSampleRate = traceSampleRate;
+
+        if (traceFile.trim().isEmpty()) {
+            warnings.add("Invalid trace file: it can't be empty. Defaulting to trace.log.");
+            traceFile = "trace.log";
+        }
+        this.traceFile = traceFile.trim();
+
+        if (traceBufferSize < 16) {
+            warnings.add("Invalid trace buffer size: " + traceBufferSize + ". Defaulting to 4096 lines.");
+            traceBufferSize = 4096;
+        }
+        this.traceBufferSize = traceBufferSize;
+    }
+
+    /**
+     * Reads an animation duration, which can't be negative
+     */
+    private static int duration(Config config, String key, int defaultTicks, List<String> warnings) {
+        int ticks = config.getInt(key, defaultTicks);
+        if (ticks < 0) {
+            warnings.add("Invalid " + key + ": " + ticks + ". Defaulting to " + defaultTicks + " ticks.");
+            return defaultTicks;
+        }
+        return ticks;
+    }
+
+    public int getFadeDuration() {
+        return fadeDuration;
+    }
+
+    public int getFadeInDelay() {
+        return fadeInDelay;
+    }
+
+    public boolean isPlaySound() {
+        return playSound;
+    }
+
+    /**
+     * @return TITLE, GTA or BOTH
+     */
+    public String getAnimationType() {
+        return animationType;
+    }
+
+    public boolean isDebug() {
+        return debug;
+    }
+
+    public String getTeleportMessage() {
+        return teleportMessage;
+    }
+
+    public int getUpDuration() {
+        return upDuration;
+    }
+
+    public int getFadeInDuration() {
+        return fadeInDuration;
+    }
+
+    public int getStayDuration() {
+        return stayDuration;
+    }
+
+    public int getFadeOutDuration() {
+        return fadeOutDuration;
+    }
+
+    public int getDownDuration() {
+        return downDuration;
+    }
+
+    public int getDownStayDuration() {
+        return downStayDuration;
+    }
+
+    public double getUpOffset() {
+        return upOffset;
+    }
+
+    /**
+     * @return The easing curve of camera movements, as registered in {@link Easing}
+     */
+    public String getEasing() {
+        return easing;
+    }
+
+    /**
+     * @return true if animations drive the camera alone, without a virtual entity
+     */
+    public boolean isCameraOnly() {
+        return cameraOnly;
+    }
+
+    /**
+     * @return The profiles choosing how long each teleport is animated
+     */
+    public TeleportProfiles getProfiles() {
+        return profiles;
+    }
+
+    /**
+     * @return true if the packets of an animation tick are sent as one batch
+     */
+    public boolean isBatchPackets() {
+        return batchPackets;
+    }
+
+    /**
+     * @return true if the virtual entity's movement is delta encoded
+     */
+    public boolean isDeltaEncoding() {
+        return deltaEncoding;
+    }
+
+    /**
+     * @return The number of delta encoded frames between two absolute snapshots
+     */
+    public int getDeltaSnapshotInterval() {
+        return deltaSnapshotInterval;
+    }
+
+    /**
+     * @return The distance in blocks above which an absolute snapshot is sent instead of a delta
+     */
+    public double getDeltaMaxJump() {
+        return deltaMaxJump;
+    }
+
+    /**
+     * @return true if destination chunks are loaded during the ascent
+     */
+    public boolean isPrewarmChunks() {
+        return prewarmChunks;
+    }
+
+    /**
+     * @return The radius in chunks prepared around a destination
+     */
+    public int getPrewarmRadius() {
+        return prewarmRadius;
+    }
+
+    /**
+     * @return The maximum number of chunks a single animation reads or queues for generation per tick
+     */
+    public int getPrewarmChunksPerTick() {
+        return prewarmChunksPerTick;
+    }
+
+    /**
+     * @return The maximum number of chunks all animations together read or queue for generation per tick
+     */
+    public int getPrewarmChunksPerServerTick() {
+        return prewarmChunksPerServerTick;
+    }
+
+    /**
+     * @return true if teleports to another level are animated
+     */
+    public boolean isAnimateCrossWorld() {
+        return animateCrossWorld;
+    }
+
+    /**
+     * @return The maximum number of ticks to wait for a cross-world destination before switching anyway
+     */
+    public int getCrossWorldTimeout() {
+        return crossWorldTimeout;
+    }
+
+    public int getMaxActiveAnimations() {
+        return maxActiveAnimations;
+    }
+
+    public int getMaxPacketsPerTick() {
+        return maxPacketsPerTick;
+    }
+
+    public double getMinTps() {
+        return minTps;
+    }
+
+    /**
+     * @return true to shorten animations over budget, false to make them instant
+     */
+    public boolean isShortenWhenOverloaded() {
+        return shortenWhenOverloaded;
+    }
+
+    public double getShortenedScale() {
+        return shortenedScale;
+    }
+
+    public boolean isAdaptiveFrames() {
+        return adaptiveFrames;
+    }
+
+    public boolean isPingAdaptiveFrames() {
+        return pingAdaptiveFrames;
+    }
+
+    public int getMaxFrameInterval() {
+        return maxFrameInterval;
+    }
+
+    public double getMsPerStep() {
+        return msPerStep;
+    }
+
+    public int getPingPerStep() {
+        return pingPerStep;
+    }
+
+    public boolean isMetricsEnabled() {
+        return metricsEnabled;
+    }
+
+    /**
+     * @return The file metrics are written to, relative to the plugin's data folder unless absolute
+     */
+    public String getMetricsFile() {
+        return metricsFile;
+    }
+
+    /**
+     * @return The number of seconds between two metrics dumps
+     */
+    public int getMetricsInterval() {
+        return metricsInterval;
+    }
+
+    /**
+     * @return true if any teleport can be traced, in debug mode every one is
+     */
+    public boolean isTracing() {
+        return debug || traceSampleRate > 0 || !tracedPlayers.isEmpty();
+    }
+
+    /**
+     * @param name The name of the player
+     * @param uniqueId The UUID of the player
+     * @return true if every teleport of the player is traced
+     */
+    public boolean isTracedPlayer(String name, UUID uniqueId) {
+        if (tracedPlayers.isEmpty()) {
+            return false;
+        }
+        return tracedPlayers.contains(name.toLowerCase(Locale.ROOT)) || tracedPlayers.contains(uniqueId.toString());
+    }
+
+    /**
+     * @return One in how many teleports of other players is traced, 0 for none
+     */
+    public int getTraceSampleRate() {
+        return traceSampleRate;
+    }
+
+    /**
+     * @return The file traces are written to, relative to the plugin's data folder unless absolute
+     */
+    public String getTraceFile() {
+        return traceFile;
+    }
+
+    /**
+     * @return The number of trace lines kept until they are written
+     */
+    public int getTraceBufferSize() {
+        return traceBufferSize;
+    }
+}
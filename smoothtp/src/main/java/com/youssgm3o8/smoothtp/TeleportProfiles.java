@@ -0,0 +1,157 @@
+package com.youssgm3o8.smoothtp;
+
+import cn.nukkit.event.player.PlayerTeleportEvent.TeleportCause;
+import cn.nukkit.level.Location;
+import cn.nukkit.utils.Config;
+import cn.nukkit.utils.ConfigSection;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Chooses how long a teleport is animated from its distance and cause.
+ * Short teleports are not animated at all, so small corrections skip the whole
+ * animation pipeline, and longer ones are scaled with the horizontal distance covered.
+ */
+public final class TeleportProfiles {
+    /**
+     * Time scale of a teleport that is not animated
+     */
+    public static final double INSTANT = 0.0;
+
+    /**
+     * How teleports of a cause are animated
+     */
+    public enum Mode {
+        // Never animated
+        INSTANT,
+        // Scaled with the distance covered
+        DISTANCE,
+        // Always played with the configured durations
+        FULL
+    }
+
+    private final double minDistance;
+    private final double referenceDistance;
+    private final double minScale;
+    private final double maxScale;
+    private final Map<TeleportCause, Mode> causes;
+
+    /**
+     * Reads and validates the profiles from a config
+     * @param config The config to read
+     * @param warnings Receives a message for every invalid value
+     */
+    public TeleportProfiles(Config config, List<String> warnings) {
+        double minDistance = config.getDouble("profiles.min-distance", 16.0);
+        double referenceDistance = config.getDouble("profiles.reference-distance", 500.0);
+        double minScale = config.getDouble("profiles.min-scale", 1.0);
+        double maxScale = config.getDouble("profiles.max-scale", 1.0);
+
+        if (minDistance < 0) {
+            warnings.add("Invalid profile min distance: " + minDistance + ". Defaulting to 16 blocks.");
+            minDistance = 16.0;
+        }
+        this.minDistance = minDistance;
+
+        if (referenceDistance <= 0) {
+            warnings.add("Invalid profile reference distance: " + referenceDistance + ". Defaulting to 500 blocks.");
+            referenceDistance = 500.0;
+        }
+        this.referenceDistance = referenceDistance;
+
+        if (minScale <= 0) {
+            warnings.add("Invalid profile min scale: " + minScale + ". Defaulting to 1.0.");
+            minScale = 1.0;
+        }
+        if (maxScale < minScale) {
+            warnings.add("Invalid profile max scale: " + maxScale + ". Defaulting to " + Math.max(1.0, minScale) + ".");
+            maxScale = Math.max(1.0, minScale);
+        }
+        this.minScale = minScale;
+        this.maxScale = maxScale;
+
+        // Pearls and chorus fruit were never animated, keep that unless overridden
+        Map<TeleportCause, Mode> causes = new EnumMap<>(TeleportCause.class);
+        causes.put(TeleportCause.ENDER_PEARL, Mode.INSTANT);
+        causes.put(TeleportCause.CHORUS_FRUIT, Mode.INSTANT);
+
+        ConfigSection section = config.getSection("profiles.causes");
+        if (section != null) {
+            for (String key : section.getKeys(false)) {
+                TeleportCause cause = parse(TeleportCause.class, key);
+                Mode mode = parse(Mode.class, section.getString(key, ""));
+                if (cause == null) {
+                    warnings.add("Invalid teleport cause in profiles: " + key + ". Ignoring it.");
+                } else if (mode == null) {
+                    warnings.add("Invalid profile for " + key + ": " + section.getString(key, "") + ". Ignoring it.");
+                } else {
+                    causes.put(cause, mode);
+                }
+            }
+        }
+        this.causes = Collections.unmodifiableMap(causes);
+    }
+
+    private static <E extends Enum<E>> E parse(Class<E> type, String name) {
+        try {
+            return Enum.valueOf(type, name.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Computes the factor applied to the animation durations of a teleport
+     * @param cause The cause of the teleport
+     * @param from Where the player teleports from
+     * @param to Where the player teleports to
+     * @return The time scale, or {@link #INSTANT} if the teleport should not be animated
+     */
+    public double timeScale(TeleportCause cause, Location from, Location to) {
+        Mode mode = cause == null ? Mode.DISTANCE : causes.getOrDefault(cause, Mode.DISTANCE);
+        return timeScale(mode, from, to);
+    }
+
+    /**
+     * Computes the factor applied to the animation durations of a teleport with a given mode
+     * @param mode How the teleport is animated
+     * @param from Where the player teleports from
+     * @param to Where the player teleports to
+     * @return The time scale, or {@link #INSTANT} if the teleport should not be animated
+     */
+    public double timeScale(Mode mode, Location from, Location to) {
+        switch (mode) {
+            case INSTANT:
+                return INSTANT;
+            case FULL:
+                return 1.0;
+            default:
+                break;
+        }
+
+        // There is no distance between two levels, play those as configured
+        if (from.getLevel() != to.getLevel()) {
+            return 1.0;
+        }
+
+        double dx = to.x - from.x;
+        double dz = to.z - from.z;
+        double distanceSquared = dx * dx + dz * dz;
+        if (distanceSquared < minDistance * minDistance) {
+            return INSTANT;
+        }
+
+        double scale = Math.sqrt(distanceSquared) / referenceDistance;
+        return Math.max(minScale, Math.min(maxScale, scale));
+    }
+
+    /**
+     * @return The horizontal distance in blocks under which teleports are not animated
+     */
+    public double getMinDistance() {
+        return minDistance;
+    }
+}
@@ -0,0 +1,13 @@
+package com.youssgm3o8.smoothtp;
+
+/**
+ * How a teleport requested through SmoothTP ended
+ */
+public enum TeleportResult {
+    // The player landed at the end of the animation
+    ANIMATED,
+    // The player was teleported without an animation
+    INSTANT,
+    // The teleport failed or was cancelled
+    FAILED
+}
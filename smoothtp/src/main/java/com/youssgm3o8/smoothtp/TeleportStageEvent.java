@@ -0,0 +1,58 @@
+package com.youssgm3o8.smoothtp;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight Recorder event for one stage of a teleport animation, so SmoothTP's cost shows up
+ * next to GC and chunk I/O in the same recording. The event lasts from the start of the stage
+ * to its end, and carries the main-thread time the animation spent in it.
+ */
+@Name("com.youssgm3o8.smoothtp.TeleportStage")
+@Label("Teleport Stage")
+@Category({"SmoothTP", "Teleport"})
+@Description("A stage of a teleport animation and the main-thread time spent in it")
+@StackTrace(false)
+public class TeleportStageEvent extends Event {
+    @Label("Player")
+    String player;
+
+    @Label("Stage")
+    String stage;
+
+    @Label("Distance")
+    @Description("Horizontal distance of the teleport in blocks, -1 between two levels")
+    double distance;
+
+    @Label("Frames")
+    @Description("Camera frames sent during the stage")
+    int frames;
+
+    @Label("Main Thread Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long mainThreadNanos;
+
+    /**
+     * Starts recording a stage, unless the event is not being recorded
+     * @param stage The name of the stage
+     * @param player The animated player
+     * @param distance The horizontal distance of the teleport, -1 between two levels
+     * @return The started event, or null when it is not recorded
+     */
+    static TeleportStageEvent begin(String stage, AnimatedPlayer player, double distance) {
+        TeleportStageEvent event = new TeleportStageEvent();
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.stage = stage;
+        event.player = player.getName();
+        event.distance = distance;
+        event.begin();
+        return event;
+    }
+}
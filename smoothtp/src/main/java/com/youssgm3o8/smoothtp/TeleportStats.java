@@ -0,0 +1,244 @@
+package com.youssgm3o8.smoothtp;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Running totals about teleport animations, reported by {@code /smoothtp stats},
+ * the metrics file and in debug mode.
+ */
+public class TeleportStats {
+    // Length of a tick on a healthy server, in nanoseconds
+    private static final long TICK_NANOS = 50_000_000L;
+
+    private final LongAdder cameraOnlyTeleports = new LongAdder();
+    private final LongAdder packetsSaved = new LongAdder();
+    private final LongAdder bytesSaved = new LongAdder();
+    private final LongAdder visibilityPacketsSent = new LongAdder();
+    private final LongAdder visibilityPacketsSaved = new LongAdder();
+    private final LongAdder prewarmedLandings = new LongAdder();
+    private final LongAdder readyLandings = new LongAdder();
+    private final LongAdder fullAdmissions = new LongAdder();
+    private final LongAdder shortenedAdmissions = new LongAdder();
+    private final LongAdder instantAdmissions = new LongAdder();
+    private final LongAdder retargets = new LongAdder();
+    private final LongAdder skippedTeleports = new LongAdder();
+    private final LongAdder coalescedTeleports = new LongAdder();
+    private final LongAdder animationsStarted = new LongAdder();
+    private final LongAdder animationsCompleted = new LongAdder();
+    private final LongAdder animationsFailed = new LongAdder();
+    private final Histogram animationPackets = new Histogram(50, 100, 200, 300, 400, 600, 800, 1200);
+    private final Histogram animationBytes = new Histogram(2_000, 5_000, 10_000, 20_000, 40_000, 80_000, 160_000);
+    // Main-thread time of each ticker pass, in seconds
+    private final Histogram tickTime = new Histogram(0.00005, 0.0001, 0.00025, 0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05);
+    // How late stages start compared to a server running at 20 TPS, in seconds
+    private final Histogram stageDrift = new Histogram(0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1.0, 2.5, 5.0);
+
+    /**
+     * Records the entity packets a camera-only animation did not have to send
+     * @param packets The number of packets skipped
+     * @param bytes The estimated number of bytes skipped
+     */
+    public void recordCameraOnlySavings(long packets, long bytes) {
+        cameraOnlyTeleports.increment();
+        packetsSaved.add(packets);
+        bytesSaved.add(bytes);
+    }
+
+    /**
+     * Records a visibility update sent only to the viewers of a teleporting player
+     * @param sent The number of viewers the packet was sent to
+     * @param saved The number of other online players that were skipped
+     */
+    public void recordViewerBroadcast(long sent, long saved) {
+        visibilityPacketsSent.add(sent);
+        visibilityPacketsSaved.add(saved);
+    }
+
+    /**
+     * Records whether the prewarmed destination chunks were ready when the player landed
+     * @param ready true if every chunk was loaded and generated in time
+     */
+    public void recordLanding(boolean ready) {
+        prewarmedLandings.increment();
+        if (ready) {
+            readyLandings.increment();
+        }
+    }
+
+    /**
+     * Records how a new teleport was admitted
+     * @param decision The decision of the admission controller
+     */
+    public void recordAdmission(AdmissionController.Decision decision) {
+        switch (decision) {
+            case FULL:
+                fullAdmissions.increment();
+                break;
+            case SHORTENED:
+                shortenedAdmissions.increment();
+                break;
+            case INSTANT:
+                instantAdmissions.increment();
+                break;
+        }
+    }
+
+    /**
+     * Records a teleport that its profile left unanimated
+     */
+    public void recordSkipped() {
+        skippedTeleports.increment();
+    }
+
+    /**
+     * Records a teleport that redirected an animation already in flight
+     * @param coalesced true if it replaced another destination that was not applied yet
+     */
+    public void recordRetarget(boolean coalesced) {
+        retargets.increment();
+        if (coalesced) {
+            coalescedTeleports.increment();
+        }
+    }
+
+    /**
+     * Records an animation that started playing
+     */
+    public void recordAnimationStarted() {
+        animationsStarted.increment();
+    }
+
+    /**
+     * Records an animation that ended, with everything it sent
+     * @param completed false if it failed or was cancelled
+     * @param packets The number of packets sent to its players
+     * @param bytes The number of encoded bytes sent to its players
+     */
+    public void recordAnimationEnded(boolean completed, long packets, long bytes) {
+        if (completed) {
+            animationsCompleted.increment();
+        } else {
+            animationsFailed.increment();
+        }
+        animationPackets.record(packets);
+        animationBytes.record(bytes);
+    }
+
+    /**
+     * Records the main-thread time of one ticker pass
+     * @param nanos The time spent stepping every animation
+     */
+    public void recordTick(long nanos) {
+        tickTime.record(nanos / 1_000_000_000.0);
+    }
+
+    /**
+     * Records how late a stage starts compared to its scheduled time
+     * @param elapsedNanos The time since the animation started
+     * @param elapsedTicks The ticks played since the animation started
+     */
+    public void recordStageStart(long elapsedNanos, int elapsedTicks) {
+        long drift = elapsedNanos - elapsedTicks * TICK_NANOS;
+        stageDrift.record(Math.max(0L, drift) / 1_000_000_000.0);
+    }
+
+    public long getCameraOnlyTeleports() {
+        return cameraOnlyTeleports.sum();
+    }
+
+    public long getPacketsSaved() {
+        return packetsSaved.sum();
+    }
+
+    public long getBytesSaved() {
+        return bytesSaved.sum();
+    }
+
+    public long getVisibilityPacketsSent() {
+        return visibilityPacketsSent.sum();
+    }
+
+    public long getVisibilityPacketsSaved() {
+        return visibilityPacketsSaved.sum();
+    }
+
+    public long getPrewarmedLandings() {
+        return prewarmedLandings.sum();
+    }
+
+    public long getReadyLandings() {
+        return readyLandings.sum();
+    }
+
+    public long getFullAdmissions() {
+        return fullAdmissions.sum();
+    }
+
+    public long getShortenedAdmissions() {
+        return shortenedAdmissions.sum();
+    }
+
+    public long getInstantAdmissions() {
+        return instantAdmissions.sum();
+    }
+
+    public long getRetargets() {
+        return retargets.sum();
+    }
+
+    public long getCoalescedTeleports() {
+        return coalescedTeleports.sum();
+    }
+
+    public long getSkippedTeleports() {
+        return skippedTeleports.sum();
+    }
+
+    public long getAnimationsStarted() {
+        return animationsStarted.sum();
+    }
+
+    public long getAnimationsCompleted() {
+        return animationsCompleted.sum();
+    }
+
+    public long getAnimationsFailed() {
+        return animationsFailed.sum();
+    }
+
+    /**
+     * @return The packets sent per animation
+     */
+    public Histogram getAnimationPackets() {
+        return animationPackets;
+    }
+
+    /**
+     * @return The encoded bytes sent per animation
+     */
+    public Histogram getAnimationBytes() {
+        return animationBytes;
+    }
+
+    /**
+     * @return The main-thread time of each ticker pass, in seconds
+     */
+    public Histogram getTickTime() {
+        return tickTime;
+    }
+
+    /**
+     * @return The delay of each stage start behind a 20 TPS schedule, in seconds
+     */
+    public Histogram getStageDrift() {
+        return stageDrift;
+    }
+
+    /**
+     * @return The share of prewarmed landings whose chunks were ready, 1 if there were none
+     */
+    public double getChunkReadyRatio() {
+        long landings = prewarmedLandings.sum();
+        return landings == 0 ? 1.0 : (double) readyLandings.sum() / landings;
+    }
+}
@@ -0,0 +1,33 @@
+package com.youssgm3o8.smoothtp;
+
+import cn.nukkit.level.Location;
+
+/**
+ * The trace of a single teleport, handed out by {@link TraceLog#begin}.
+ * Messages use {} placeholders and are only formatted by the async writer.
+ */
+public final class Trace {
+    private final TraceLog log;
+    private final String player;
+    private final long teleport;
+
+    Trace(TraceLog log, String player, long teleport) {
+        this.log = log;
+        this.player = player;
+        this.teleport = teleport;
+    }
+
+    /**
+     * Records a trace line
+     * @param message The message, with a {} for each argument
+     * @param args The arguments, locations are copied as they are often changed afterwards
+     */
+    public void log(String message, Object... args) {
+        for (int i = 0; i < args.length; i++) {
+            if (args[i] instanceof Location) {
+                args[i] = ((Location) args[i]).clone();
+            }
+        }
+        log.add(new TraceLog.Entry(System.currentTimeMillis(), player, teleport, message, args));
+    }
+}
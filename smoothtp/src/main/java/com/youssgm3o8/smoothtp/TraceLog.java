@@ -0,0 +1,274 @@
+package com.youssgm3o8.smoothtp;
+
+import cn.nukkit.level.Location;
+import cn.nukkit.scheduler.AsyncTask;
+import cn.nukkit.scheduler.TaskHandler;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Structured trace of individual teleports, cheap enough to stay on in production.
+ * Only some teleports are traced: those of the configured players, one in every few
+ * teleports when sampling, or all of them in debug mode. Untraced teleports get no
+ * {@link Trace} at all, so they pay a single null check per trace point.
+ * <p>
+ * Trace lines keep their arguments unformatted in a bounded ring buffer, dropping the
+ * oldest lines when it is full. An async task formats and writes them to the trace file
+ * every second, and to the console in debug mode.
+ * <p>
+ * The buffer and where it is written are swapped together on reload, so the writer
+ * always drains a buffer to the file it was created for. The replaced buffer is
+ * flushed by one last async write.
+ */
+public class TraceLog implements Runnable {
+    private static final DateTimeFormatter TIME = DateTimeFormatter.ofPattern("HH:mm:ss.SSS").withZone(ZoneId.systemDefault());
+
+    private final Main plugin;
+    // Teleports seen so far, numbering the traces and picking the sampled ones
+    private final AtomicLong teleports = new AtomicLong();
+    private final LongAdder dropped = new LongAdder();
+    // Null while tracing is off
+    private final AtomicReference<Sink> sink = new AtomicReference<>();
+    private TaskHandler task;
+    // Only used by the writer, under the lock of this object
+    private BufferedWriter writer;
+    private File writerFile;
+
+    /**
+     * A trace line waiting to be formatted
+     */
+    static final class Entry {
+        final long time;
+        final String player;
+        final long teleport;
+        final String message;
+        final Object[] args;
+
+        Entry(long time, String player, long teleport, String message, Object[] args) {
+            this.time = time;
+            this.player = player;
+            this.teleport = teleport;
+            this.message = message;
+            this.args = args;
+        }
+    }
+
+    /**
+     * A buffer and where its lines are written
+     */
+    static final class Sink {
+        final ArrayBlockingQueue<Entry> buffer;
+        final File file;
+        final boolean console;
+
+        Sink(ArrayBlockingQueue<Entry> buffer, File file, boolean console) {
+            this.buffer = buffer;
+            this.file = file;
+            this.console = console;
+        }
+    }
+
+    /**
+     * Creates a trace log following the current settings
+     * @param plugin The plugin instance
+     */
+    public TraceLog(Main plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * Starts or stops the writer to match the current settings.
+     * Lines still buffered for the previous settings are written asynchronously.
+     */
+    public void restart() {
+        SmoothTpSettings settings = plugin.getSettings();
+        Sink next = null;
+        if (settings.isTracing()) {
+            File file = new File(settings.getTraceFile());
+            if (!file.isAbsolute()) {
+                file = new File(plugin.getDataFolder(), settings.getTraceFile());
+            }
+            next = new Sink(new ArrayBlockingQueue<>(settings.getTraceBufferSize()), file, settings.isDebug());
+        }
+
+        Sink previous = sink.getAndSet(next);
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+        if (next != null) {
+            task = plugin.getServer().getScheduler().scheduleRepeatingTask(plugin, this, 20, true);
+        }
+
+        if (previous != null) {
+            plugin.getServer().getScheduler().scheduleAsyncTask(plugin, new AsyncTask() {
+                @Override
+                public void onRun() {
+                    write(previous);
+                    if (sink.get() == null) {
+                        closeWriter();
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Stops the writer, writing what is left in the buffer on the calling thread.
+     * Only meant for shutdown, when async tasks no longer run.
+     */
+    public void stop() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+
+        Sink previous = sink.getAndSet(null);
+        if (previous != null) {
+            write(previous);
+        }
+        closeWriter();
+    }
+
+    /**
+     * Decides whether a teleport is traced
+     * @param player The teleporting player
+     * @return The trace of the teleport, or null if it is not traced
+     */
+    public Trace begin(AnimatedPlayer player) {
+        SmoothTpSettings settings = plugin.getSettings();
+        if (!settings.isTracing()) {
+            return null;
+        }
+
+        long teleport = teleports.incrementAndGet();
+        int sampleRate = settings.getTraceSampleRate();
+        boolean traced = settings.isDebug()
+                || settings.isTracedPlayer(player.getName(), player.getUniqueId())
+                || (sampleRate > 0 && teleport % sampleRate == 0);
+        return traced ? new Trace(this, player.getName(), teleport) : null;
+    }
+
+    /**
+     * Queues a trace line, dropping the oldest one if the buffer is full
+     */
+    void add(Entry entry) {
+        Sink current = sink.get();
+        if (current == null) {
+            // Tracing was turned off while the teleport was running
+            return;
+        }
+
+        ArrayBlockingQueue<Entry> queue = current.buffer;
+        while (!queue.offer(entry)) {
+            if (queue.poll() != null) {
+                dropped.increment();
+            }
+        }
+    }
+
+    @Override
+    public void run() {
+        Sink current = sink.get();
+        if (current != null) {
+            write(current);
+        }
+    }
+
+    private synchronized void write(Sink target) {
+        List<Entry> entries = new ArrayList<>();
+        target.buffer.drainTo(entries);
+        long lost = dropped.sumThenReset();
+        if (entries.isEmpty() && lost == 0) {
+            return;
+        }
+
+        StringBuilder line = new StringBuilder(128);
+        try {
+            BufferedWriter out = openWriter(target.file);
+            if (lost > 0) {
+                out.write(TIME.format(Instant.now()) + " Trace buffer full, " + lost + " lines dropped");
+                out.newLine();
+            }
+            for (Entry entry : entries) {
+                line.setLength(0);
+                line.append(TIME.format(Instant.ofEpochMilli(entry.time)))
+                        .append(" [").append(entry.player).append(" #").append(entry.teleport).append("] ");
+                format(line, entry.message, entry.args);
+                out.write(line.toString());
+                out.newLine();
+                if (target.console) {
+                    plugin.getLogger().info(line.toString());
+                }
+            }
+            out.flush();
+        } catch (IOException e) {
+            plugin.getLogger().warning("Could not write traces to " + target.file + ": " + e.getMessage());
+            closeWriter();
+        }
+    }
+
+    private BufferedWriter openWriter(File file) throws IOException {
+        if (writer == null || !file.equals(writerFile)) {
+            closeWriter();
+            File parent = file.getAbsoluteFile().getParentFile();
+            if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+                throw new IOException("Could not create " + parent);
+            }
+            writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8));
+            writerFile = file;
+        }
+        return writer;
+    }
+
+    private synchronized void closeWriter() {
+        if (writer != null) {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                plugin.getLogger().warning("Could not close the trace file: " + e.getMessage());
+            }
+            writer = null;
+        }
+    }
+
+    /**
+     * Replaces each {} of a message with the next argument
+     */
+    static void format(StringBuilder out, String message, Object[] args) {
+        int arg = 0;
+        int from = 0;
+        int at;
+        while ((at = message.indexOf("{}", from)) >= 0) {
+            out.append(message, from, at);
+            out.append(arg < args.length ? describe(args[arg++]) : "{}");
+            from = at + 2;
+        }
+        out.append(message, from, message.length());
+    }
+
+    private static String describe(Object value) {
+        if (value instanceof Location) {
+            Location location = (Location) value;
+            return String.format(Locale.ROOT, "%s(%.2f, %.2f, %.2f, yaw %.1f, pitch %.1f)",
+                    location.getLevel() == null ? "" : location.getLevel().getName() + " ",
+                    location.x, location.y, location.z, location.yaw, location.pitch);
+        }
+        return String.valueOf(value);
+    }
+}
@@ -1,24 +1,97 @@
 package com.youssgm3o8.smoothtp;
 
-import cn.nukkit.Player;
+import cn.nukkit.level.Level;
 import cn.nukkit.level.Location;
 import cn.nukkit.network.protocol.LevelEventPacket;
-import cn.nukkit.potion.Effect;
-import cn.nukkit.scheduler.TaskHandler;
 
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Manages the entire GTA-style teleportation animation process.
  * This class coordinates the sequence of animations and teleportation.
  */
-public class TransmissionProcess {
+public class TransmissionProcess implements Animation {
+    // Ticks to wait after detaching the camera before the final entity removal
+    private static final int CLEANUP_DELAY = 5;
+    // Ticks between two reads of the player's ping
+    private static final int PING_SAMPLE_INTERVAL = 20;
+    
+    /**
+     * The stages of the animation timeline, in the order they are played
+     */
+    private enum Stage {
+        ASCENT,
+        HOLD_UP,
+        PAN,
+        HOLD_DOWN,
+        WAIT_FOR_CHUNKS,
+        DESCENT,
+        DOWN_STAY,
+        CLEANUP,
+        DONE
+    }
+    
     private final Main plugin;
-    private final Player player;
-    private final Location destination;
+    // Settings at the time the teleport started, kept for the whole animation
+    private final SmoothTpSettings settings;
+    private final AnimatedPlayer player;
+    private Location destination;
+    // Destination of a teleport issued during the animation, applied on the next tick
+    private Location pendingDestination;
+    // Whether the process is teleporting the player itself, so the event is not treated as a retarget
+    private boolean teleporting;
+    // Completed when the player lands, or exceptionally if the teleport fails
+    private CompletableFuture<TeleportResult> completion = new CompletableFuture<>();
     private final VirtualEntity entity;
+    // Trace of this teleport, null unless it was picked for tracing
+    private final Trace trace;
+    private final PacketBatch batch;
+    // Prepares the destination chunks while the camera is in the air, null if disabled
+    private ChunkPrewarmer prewarmer;
     private final UUID playerId;
-    private TaskHandler animationTask;
+    // Factor applied to every configured duration
+    private final double timeScale;
+    
+    private Location startLocation;
+    private Location upLocation;
+    private Location downLocation;
+    private int upDuration;
+    private int fadeInDuration;
+    private int stayDuration;
+    private int fadeOutDuration;
+    private int downDuration;
+    private int downStayDuration;
+    private double upOffset;
+    private boolean playSound;
+    private boolean useTitle;
+    // Whether the destination is in another level than the player
+    private boolean crossWorld;
+    
+    // Precomputed camera path for the whole animation
+    private CameraTrack track;
+    private int frame;
+    
+    private Stage stage = Stage.ASCENT;
+    private int remaining;
+    
+    // Last sampled ping of the player, and ticks until it is sampled again
+    private int ping;
+    private int pingSampleIn;
+    
+    // When the animation started and how many ticks it played since, to measure stage drift
+    private long startNanos;
+    private int elapsedTicks;
+    // Whether the end of the animation was recorded in the stats
+    private boolean ended;
+    
+    // Horizontal distance to the destination, -1 between two levels
+    private double distance;
+    // Flight Recorder event of the current stage, null unless it is being recorded
+    private TeleportStageEvent stageEvent;
+    // When the main-thread time of the current tick started counting towards the stage event
+    private long stageTickStart;
+    private boolean ticking;
     
     /**
      * Creates a new transmission process for a player
@@ -26,48 +99,72 @@ public class TransmissionProcess {
      * @param player The player to teleport
      * @param destination The destination to teleport to
      */
-    public TransmissionProcess(Main plugin, Player player, Location destination) {
+    public TransmissionProcess(Main plugin, AnimatedPlayer player, Location destination) {
+        this(plugin, player, destination, 1.0);
+    }
+    
+    /**
+     * Creates a new transmission process for a player with scaled durations
+     * @param plugin The plugin instance
+     * @param player The player to teleport
+     * @param destination The destination to teleport to
+     * @param timeScale The factor applied to every configured duration
+     */
+    public TransmissionProcess(Main plugin, AnimatedPlayer player, Location destination, double timeScale) {
         this.plugin = plugin;
+        this.settings = plugin.getSettings();
         this.player = player;
         this.destination = destination;
         this.playerId = player.getUniqueId();
-        this.entity = new VirtualEntity(plugin, player);
+        this.timeScale = timeScale;
+        this.batch = new PacketBatch(player, settings.isBatchPackets());
+        this.trace = plugin.getTraceLog().begin(player);
+        this.entity = new VirtualEntity(plugin, player, settings, batch, trace);
+        
+        // Teleports issued from now on redirect this animation
+        plugin.getAnimations().register(playerId, this);
         
         // Start the teleportation process
         start();
+        
+        // The shared ticker drives the timeline from here on
+        plugin.getAnimationTicker().add(this);
     }
     
     /**
      * Begins the teleportation sequence
      */
     private void start() {
-        // Load animation durations from config
-        int upDuration = plugin.getConfig().getInt("gta.up-duration", 40);
-        int fadeInDuration = plugin.getConfig().getInt("gta.fade-in-duration", 20);
-        int stayDuration = plugin.getConfig().getInt("gta.stay-duration", 20);
-        int fadeOutDuration = plugin.getConfig().getInt("gta.fade-out-duration", 40);
-        int downDuration = plugin.getConfig().getInt("gta.down-duration", 40);
-        int downStayDuration = plugin.getConfig().getInt("gta.down-stay-duration", 20);
-        double upOffset = plugin.getConfig().getDouble("gta.up-offset", 100.0);
-        boolean playSound = plugin.getConfig().getBoolean("play-sound", true);
-        boolean useTitle = plugin.getConfig().getString("animation-type", "GTA").contains("BOTH");
-        
-        if (plugin.isDebug()) {
-            plugin.getLogger().info("Starting GTA teleport for " + player.getName());
-            plugin.getLogger().info("From: " + player.getLocation() + " To: " + destination);
-            plugin.getLogger().info("Up duration: " + upDuration + " ticks");
+        // Load animation durations from the settings
+        upDuration = scale(settings.getUpDuration());
+        fadeInDuration = scale(settings.getFadeInDuration());
+        stayDuration = scale(settings.getStayDuration());
+        fadeOutDuration = scale(settings.getFadeOutDuration());
+        downDuration = scale(settings.getDownDuration());
+        downStayDuration = scale(settings.getDownStayDuration());
+        upOffset = settings.getUpOffset();
+        playSound = settings.isPlaySound();
+        useTitle = settings.getAnimationType().equals("BOTH");
+        
+        if (trace != null) {
+            trace.log("Starting GTA teleport from {} to {}, up duration {} ticks, time scale {}",
+                    player.getLocation(), destination, upDuration, timeScale);
         }
         
         // Create upward and downward locations
-        Location startLocation = player.getLocation().clone();
+        startLocation = player.getLocation().clone();
         
-        Location upLocation = startLocation.clone();
+        upLocation = startLocation.clone();
         upLocation.y += upOffset;
         upLocation.pitch = 90; // Look down
         
-        Location downLocation = destination.clone();
-        downLocation.y += upOffset;
-        downLocation.pitch = 90; // Look down
+        setDestination(destination);
+        
+        // Compute the whole camera path once, so each tick is only a frame lookup
+        track = planTrack();
+        
+        startNanos = System.nanoTime();
+        plugin.getTeleportStats().recordAnimationStarted();
         
         try {
             // Spawn and attach the camera entity
@@ -81,25 +178,11 @@ public class TransmissionProcess {
             
             // If using both effects, start fade out
             if (useTitle) {
-                int fadeDuration = plugin.getConfig().getInt("title.fade-duration", 15);
-                player.sendTitle("§0", "", 0, fadeDuration, 0);
+                player.sendTitle("§0", "", 0, settings.getFadeDuration(), 0);
             }
             
-            // Create a comprehensive animation sequence that chains all movements
-            runAnimationSequence(
-                startLocation,
-                upLocation,
-                downLocation,
-                destination,
-                upDuration,
-                fadeInDuration,
-                stayDuration,
-                fadeOutDuration,
-                downDuration,
-                downStayDuration,
-                playSound,
-                useTitle
-            );
+            // Start the timeline with the entity moving upward
+            beginAscent();
             
         } catch (Exception e) {
             // If anything goes wrong, clean up
@@ -108,172 +191,640 @@ public class TransmissionProcess {
     }
     
     /**
-     * Runs the complete animation sequence with smooth transitions
+     * Points the remaining timeline at a destination and starts preparing its chunks
+     */
+    private void setDestination(Location to) {
+        destination = to;
+        
+        downLocation = to.clone();
+        downLocation.y += upOffset;
+        downLocation.pitch = 90; // Look down
+        
+        crossWorld = startLocation.getLevel() != to.getLevel();
+        double dx = to.x - startLocation.x;
+        double dz = to.z - startLocation.z;
+        distance = crossWorld ? -1.0 : Math.sqrt(dx * dx + dz * dz);
+        
+        // Start preparing the destination chunks right away, a level switch always needs them
+        releaseChunks();
+        if (settings.isPrewarmChunks() || crossWorld) {
+            prewarmer = new ChunkPrewarmer(to, settings.getPrewarmRadius(), settings.getPrewarmChunksPerTick(),
+                    plugin.getAnimationTicker());
+        }
+    }
+    
+    /**
+     * Stops holding the destination chunks, the level may unload them again
+     */
+    private void releaseChunks() {
+        if (prewarmer != null) {
+            prewarmer.release();
+            prewarmer = null;
+        }
+    }
+    
+    /**
+     * Redirects the animation to a new destination, for a teleport issued while it is running.
+     * Several teleports before the next tick are coalesced, only the last destination is used.
+     * @param to The new destination
+     * @return false if the animation is already over and can't be redirected
+     */
+    public boolean retarget(Location to) {
+        if (stage == Stage.CLEANUP || stage == Stage.DONE) {
+            return false;
+        }
+        
+        plugin.getTeleportStats().recordRetarget(pendingDestination != null);
+        pendingDestination = to;
+        if (completion.isDone()) {
+            // Already landed once, the new destination gets its own completion
+            completion = new CompletableFuture<>();
+        }
+        return true;
+    }
+    
+    /**
+     * @return A future completed when the player lands at the current destination
+     */
+    public CompletableFuture<TeleportResult> getCompletion() {
+        return completion;
+    }
+    
+    /**
+     * Completes the current destination's future and announces it, unless already done
+     */
+    private void complete(TeleportResult result, Throwable error) {
+        if (!completion.isDone()) {
+            plugin.completeTeleport(player, destination, completion, result, error);
+        }
+    }
+    
+    /**
+     * Completes the current destination's future after teleporting the player there
+     * @param arrived false if the teleport was cancelled, which fails the future
+     * @param result How the teleport ended if the player arrived
+     */
+    private void completeArrival(boolean arrived, TeleportResult result) {
+        if (arrived) {
+            complete(result, null);
+        } else {
+            complete(TeleportResult.FAILED, new IllegalStateException("Teleport of " + player.getName() + " was cancelled"));
+        }
+    }
+    
+    /**
+     * @return true while the process itself is teleporting the player
+     */
+    public boolean isTeleporting() {
+        return teleporting;
+    }
+    
+    /**
+     * Re-plans the rest of the timeline towards the pending destination
+     */
+    private void applyRetarget() {
+        Location to = pendingDestination;
+        pendingDestination = null;
+        
+        if (trace != null) {
+            trace.log("Retargeting during {} from {} to {}", stage, destination, to);
+        }
+        
+        // Like a new teleport, a switch to another level than the player's is only animated if configured.
+        // The player stays at the start until landing, so this holds for every stage.
+        if (to.getLevel() != player.getLocation().getLevel() && !settings.isAnimateCrossWorld()) {
+            destination = to;
+            completeArrival(teleportPlayer(to), TeleportResult.INSTANT);
+            cleanup(null);
+            return;
+        }
+        
+        switch (stage) {
+            case ASCENT:
+            case HOLD_UP:
+                // The ascent doesn't depend on the destination, only the frames after it change
+                setDestination(to);
+                track = planTrack();
+                break;
+            case PAN:
+            case HOLD_DOWN:
+            case WAIT_FOR_CHUNKS: {
+                // Pan again from wherever the camera is now
+                Location camera = cameraLocation();
+                setDestination(to);
+                track = planRetargetTrack(camera);
+                frame = 0;
+                beginPan();
+                break;
+            }
+            case DESCENT:
+            case DOWN_STAY: {
+                // Already landed, the next leg leaves from where the player is now
+                startLocation = player.getLocation();
+                Location camera = cameraLocation();
+                
+                // Fly over and land again like the first time, waiting for the chunks of another level
+                setDestination(to);
+                track = planRetargetTrack(camera);
+                frame = 0;
+                if (playSound) {
+                    playTeleportSound(startLocation);
+                }
+                if (useTitle) {
+                    player.sendTitle("§0", "", 0, settings.getFadeDuration(), 0);
+                }
+                beginPan();
+                break;
+            }
+            default:
+                break;
+        }
+    }
+    
+    /**
+     * @return The location of the last frame sent to the camera
+     */
+    private Location cameraLocation() {
+        if (frame == 0) {
+            return startLocation.clone();
+        }
+        int last = Math.min(frame, track.length()) - 1;
+        Location camera = startLocation.clone();
+        camera.x = track.getX(last);
+        camera.y = track.getY(last);
+        camera.z = track.getZ(last);
+        camera.yaw = track.getYaw(last);
+        camera.pitch = track.getPitch(last);
+        return camera;
+    }
+    
+    /**
+     * Teleports the player without the teleport being taken for a retarget
+     * @return false if another plugin cancelled the teleport
+     */
+    private boolean teleportPlayer(Location to) {
+        teleporting = true;
+        try {
+            return player.teleport(to);
+        } finally {
+            teleporting = false;
+        }
+    }
+    
+    /**
+     * Applies the time scale of this process to a configured duration
+     */
+    private int scale(int ticks) {
+        return (int) Math.round(ticks * timeScale);
+    }
+    
+    /**
+     * Computes the camera path for all four stages.
+     * Stage lengths here must match the ones used by the timeline in {@link #advance()}.
+     * @return The precomputed camera track
+     */
+    private CameraTrack planTrack() {
+        return CameraTrack.plan(startLocation, upLocation, downLocation, destination, settings.getEasing(),
+                upDuration, fadeInDuration, stayDuration, fadeOutDuration, downDuration, downStayDuration, crossWorld);
+    }
+    
+    /**
+     * Computes the camera path from a retarget during the pan or after landing, starting at the current camera position.
+     * Stage lengths here must match the ones used by the timeline in {@link #advance()}.
+     * @param camera Where the camera is now
+     * @return The precomputed camera track
+     */
+    private CameraTrack planRetargetTrack(Location camera) {
+        int panTicks = Math.max(1, stayDuration);
+        int descentTicks = Math.max(1, downDuration);
+        
+        CameraTrack track = new CameraTrack(panTicks + Math.max(0, fadeOutDuration)
+                + descentTicks + Math.max(0, downStayDuration));
+        
+        String easing = settings.getEasing();
+        if (crossWorld) {
+            track.hold(camera, panTicks);
+            track.hold(camera, fadeOutDuration);
+        } else {
+            track.move(camera, downLocation, Easing.table(easing, panTicks));
+            track.hold(downLocation, fadeOutDuration);
+        }
+        track.move(downLocation, destination, Easing.table(easing, descentTicks));
+        track.hold(destination, downStayDuration);
+        return track;
+    }
+    
+    /**
+     * Steps the animation timeline by one tick. Called by the {@link AnimationTicker}.
+     * @return true while the process still needs ticking
      */
-    private void runAnimationSequence(
-            Location startLocation,
-            Location upLocation,
-            Location downLocation,
-            Location finalDestination,
-            int upDuration,
-            int fadeInDuration,
-            int stayDuration,
-            int fadeOutDuration,
-            int downDuration,
-            int downStayDuration,
-            boolean playSound,
-            boolean useTitle
-    ) {
+    @Override
+    public boolean tick() {
+        if (stage == Stage.DONE) {
+            // Cancelled since the last tick
+            return false;
+        }
+        
+        elapsedTicks++;
+        ticking = true;
+        if (stageEvent != null) {
+            stageTickStart = System.nanoTime();
+        }
+        
+        // Everything sent to the player during this tick goes out as one batch
+        batch.begin();
         try {
-            if (plugin.isDebug()) {
-                plugin.getLogger().info("Stage 1: Moving up from " + startLocation + " to " + upLocation);
+            if (pendingDestination != null) {
+                applyRetarget();
             }
             
-            // Start animation with the entity moving upward
-            animationTask = entity.move(upLocation, upDuration);
+            if (prewarmer != null && !prewarmer.isDone()) {
+                prewarmer.tick();
+            }
             
-            // After moving up, continuously update camera during the delay
-            for (int i = 0; i < fadeInDuration; i++) {
-                final int tick = i;
-                plugin.getServer().getScheduler().scheduleDelayedTask(plugin, () -> {
-                    entity.updateCamera(upLocation);
-                }, upDuration + tick);
+            // Under load or on a slow connection, only every few frames are sent
+            // and the client interpolates in between
+            if (--pingSampleIn <= 0) {
+                ping = player.getPing();
+                pingSampleIn = PING_SAMPLE_INTERVAL;
             }
+            int interval = plugin.getFrameRate().getInterval(ping);
+            entity.setInterpolated(interval > 1);
+            boolean keyframe = (remaining - 1) % interval == 0; // The last frame of a stage is always sent
             
-            // Stage 2: Move horizontally (x/z) after the delay
-            plugin.getServer().getScheduler().scheduleDelayedTask(plugin, () -> {
-                try {
-                    if (plugin.isDebug()) {
-                        plugin.getLogger().info("Stage 2: Moving horizontally from " + upLocation + " to " + downLocation);
+            switch (stage) {
+                case ASCENT:
+                case PAN:
+                case DESCENT:
+                    if (keyframe) {
+                        entity.playFrame(track, frame);
+                        countFrame();
                     }
-                    
-                    // Keep camera at the elevated position
-                    entity.teleport(upLocation); // Ensure we're at the correct upLocation
-                    animationTask = entity.move(downLocation, stayDuration);
-                    
-                    // After moving horizontally, continuously update camera during the delay
-                    for (int i = 0; i < fadeOutDuration; i++) {
-                        final int tick = i;
-                        plugin.getServer().getScheduler().scheduleDelayedTask(plugin, () -> {
-                            entity.updateCamera(downLocation);
-                        }, stayDuration + tick);
+                    frame++;
+                    break;
+                case HOLD_UP:
+                case HOLD_DOWN:
+                case DOWN_STAY:
+                    if (keyframe) {
+                        entity.holdFrame(track, frame);
+                        countFrame();
                     }
-                    
-                    // Stage 3: Teleport player and move downward
-                    plugin.getServer().getScheduler().scheduleDelayedTask(plugin, () -> {
-                        try {
-                            if (plugin.isDebug()) {
-                                plugin.getLogger().info("Stage 3: Actually teleporting player to " + finalDestination);
-                            }
-                            
-                            // Apply no fall damage effect before teleporting
-                            Effect noFall = Effect.getEffect(Effect.DAMAGE_RESISTANCE)
-                                .setDuration(60)  // 3 seconds
-                                .setAmplifier(4)  // Level 5 resistance (immunity)
-                                .setVisible(false);  // Hide particles
-                            player.addEffect(noFall);
-                            
-                            // Teleport the player to the destination (silently)
-                            player.teleport(finalDestination);
-                            
-                            if (playSound) {
-                                playTeleportSound(finalDestination);
-                            }
-                            
-                            if (useTitle) {
-                                // Fade in
-                                int fadeDuration = plugin.getConfig().getInt("title.fade-duration", 15);
-                                player.sendTitle("", "", 0, fadeDuration, 0);
-                            }
-                            
-                            if (plugin.isDebug()) {
-                                plugin.getLogger().info("Stage 4: Moving down from " + downLocation + " to " + finalDestination);
-                            }
-                            
-                            // Ensure we're at the correct downLocation
-                            entity.teleport(downLocation); 
-                            animationTask = entity.move(finalDestination, downDuration);
-                            
-                            // After moving down, continuously update camera during the delay
-                            for (int i = 0; i < downStayDuration; i++) {
-                                final int tick = i;
-                                plugin.getServer().getScheduler().scheduleDelayedTask(plugin, () -> {
-                                    entity.updateCamera(finalDestination);
-                                }, downDuration + tick);
-                            }
-                            
-                            // Final stage: Cleanup
-                            plugin.getServer().getScheduler().scheduleDelayedTask(plugin, () -> {
-                                if (plugin.isDebug()) {
-                                    plugin.getLogger().info("Final stage: Cleanup for " + player.getName());
-                                }
-                                
-                                // Show teleport message if configured
-                                String teleportMessage = plugin.getConfig().getString("teleport-message", "");
-                                if (!teleportMessage.isEmpty()) {
-                                    player.sendMessage(teleportMessage);
-                                }
-                                
-                                cleanup(null);
-                                
-                            }, downDuration + downStayDuration);
-                            
-                        } catch (Exception e) {
-                            cleanup(e);
-                        }
-                    }, stayDuration + fadeOutDuration);
-                    
-                } catch (Exception e) {
-                    cleanup(e);
-                }
-            }, upDuration + fadeInDuration);
+                    frame++;
+                    break;
+                case WAIT_FOR_CHUNKS:
+                    // Keep the camera on the last frame before landing
+                    entity.holdFrame(track, frame - 1);
+                    countFrame();
+                    if (prewarmer.isReady()) {
+                        remaining = 1;
+                    }
+                    break;
+                case CLEANUP:
+                    break;
+                case DONE:
+                    return false;
+            }
             
+            if (--remaining <= 0) {
+                advance();
+            }
         } catch (Exception e) {
-            cleanup(e);
+            if (stage == Stage.CLEANUP) {
+                // Cleanup itself failed, give up on the entity rather than retrying forever
+                plugin.getLogger().error("Error during cleanup: " + e.getMessage(), e);
+                plugin.getAnimations().unregister(playerId, this);
+                complete(TeleportResult.FAILED, e);
+                setStage(Stage.DONE);
+            } else {
+                cleanup(e);
+            }
+        } finally {
+            batch.flush();
+            if (stageEvent != null) {
+                stageEvent.mainThreadNanos += System.nanoTime() - stageTickStart;
+            }
+            ticking = false;
+        }
+        
+        return stage != Stage.DONE;
+    }
+    
+    @Override
+    public void cancel(UUID playerId) {
+        if (stage == Stage.DONE) {
+            return;
+        }
+        
+        if (trace != null) {
+            trace.log("Cancelling teleport animation during {}", stage);
+        }
+        
+        // Nothing is queued outside a ticker pass, so these go out right away
+        setStage(Stage.DONE);
+        pendingDestination = null;
+        releaseChunks();
+        try {
+            entity.detachCamera();
+            entity.remove();
+            // The camera was left wherever the animation stopped
+            entity.resetCamera();
+        } finally {
+            recordEnd(false);
+            plugin.getAnimations().unregister(this.playerId, this);
+            complete(TeleportResult.FAILED, new IllegalStateException("Teleport of " + player.getName() + " was cancelled"));
+        }
+    }
+    
+    @Override
+    public boolean involves(Level level) {
+        return startLocation.getLevel() == level || destination.getLevel() == level
+                || (pendingDestination != null && pendingDestination.getLevel() == level);
+    }
+    
+    /**
+     * Moves the timeline on to the stage following the current one
+     */
+    private void advance() {
+        switch (stage) {
+            case ASCENT:
+                // After moving up, keep the camera in place during the delay
+                enterStage(Stage.HOLD_UP, fadeInDuration);
+                break;
+            case HOLD_UP:
+                beginPan();
+                break;
+            case PAN:
+                // After moving horizontally, keep the camera in place during the delay
+                enterStage(Stage.HOLD_DOWN, fadeOutDuration);
+                break;
+            case HOLD_DOWN:
+                if (crossWorld && !prewarmer.isReady()) {
+                    // Hold the camera in the air until the target level is ready, up to the timeout
+                    if (trace != null) {
+                        trace.log("Waiting for destination chunks in {}", destination.getLevel().getName());
+                    }
+                    enterStage(Stage.WAIT_FOR_CHUNKS, settings.getCrossWorldTimeout());
+                } else {
+                    beginLanding();
+                }
+                break;
+            case WAIT_FOR_CHUNKS:
+                if (!prewarmer.isReady()) {
+                    plugin.getLogger().warning("Destination chunks for " + player.getName()
+                            + " were not ready in time, switching level anyway");
+                }
+                beginLanding();
+                break;
+            case DESCENT:
+                // After moving down, keep the camera in place during the delay
+                enterStage(Stage.DOWN_STAY, downStayDuration);
+                break;
+            case DOWN_STAY:
+                finish();
+                break;
+            case CLEANUP:
+                // Second attempt at cleanup to make sure entity is fully removed
+                entity.remove();
+                
+                // IMPORTANT: Remove player from processing set
+                plugin.getAnimations().unregister(playerId, this);
+                setStage(Stage.DONE);
+                
+                if (trace != null) {
+                    trace.log("Animation cleanup complete after {} ticks", elapsedTicks);
+                }
+                break;
+            case DONE:
+                break;
+        }
+    }
+    
+    /**
+     * Switches to a stage lasting the given number of ticks, skipping it if empty
+     */
+    private void enterStage(Stage next, int ticks) {
+        if (elapsedTicks > 0) {
+            plugin.getTeleportStats().recordStageStart(System.nanoTime() - startNanos, elapsedTicks);
+        }
+        setStage(next);
+        remaining = ticks;
+        if (ticks <= 0) {
+            advance();
+        }
+    }
+    
+    /**
+     * Switches the timeline to a stage, committing the Flight Recorder event of the previous one
+     */
+    private void setStage(Stage next) {
+        if (stageEvent != null) {
+            if (ticking) {
+                stageEvent.mainThreadNanos += System.nanoTime() - stageTickStart;
+            }
+            stageEvent.commit();
+        }
+        
+        stage = next;
+        stageEvent = next == Stage.DONE ? null : TeleportStageEvent.begin(next.name(), player, distance);
+        if (stageEvent != null) {
+            stageTickStart = System.nanoTime();
+        }
+    }
+    
+    /**
+     * Counts a frame sent to the camera towards the current stage event
+     */
+    private void countFrame() {
+        if (stageEvent != null) {
+            stageEvent.frames++;
+        }
+    }
+    
+    /**
+     * Stage 1: Moves the camera straight up from the start location
+     */
+    private void beginAscent() {
+        if (trace != null) {
+            trace.log("Stage 1: Moving up from {} to {}", startLocation, upLocation);
+        }
+        
+        enterStage(Stage.ASCENT, Math.max(1, upDuration));
+    }
+    
+    /**
+     * Stage 2: Moves the camera horizontally (x/z) above the destination
+     */
+    private void beginPan() {
+        if (trace != null) {
+            if (crossWorld) {
+                trace.log("Stage 2: Holding above {} while {} is prepared", upLocation, destination.getLevel().getName());
+            } else {
+                trace.log("Stage 2: Moving horizontally from {} to {}", upLocation, downLocation);
+            }
+        }
+        
+        enterStage(Stage.PAN, Math.max(1, stayDuration));
+    }
+    
+    /**
+     * Stage 3 and 4: Teleports the player and moves the camera downward
+     */
+    private void beginLanding() {
+        if (trace != null) {
+            trace.log("Stage 3: Actually teleporting player to {}", destination);
+        }
+        
+        // The landing is recorded on its own, it is the most expensive moment of the animation
+        TeleportStageEvent landing = TeleportStageEvent.begin("LANDING", player, distance);
+        long landingStart = landing != null ? System.nanoTime() : 0L;
+        
+        if (prewarmer != null) {
+            boolean ready = prewarmer.isReady();
+            plugin.getTeleportStats().recordLanding(ready);
+            
+            if (trace != null) {
+                trace.log("Destination chunks {} ready at landing", ready ? "were" : "were not");
+            }
+        }
+        
+        // Apply no fall damage effect before teleporting
+        player.protectFromFall(60);  // 3 seconds
+        
+        // Teleport the player to the destination (silently)
+        completeArrival(teleportPlayer(destination), TeleportResult.ANIMATED);
+        
+        // The player holds the chunks around them from here on
+        releaseChunks();
+        
+        if (playSound) {
+            playTeleportSound(destination);
+        }
+        
+        if (useTitle) {
+            // Fade in
+            player.sendTitle("", "", 0, settings.getFadeDuration(), 0);
+        }
+        
+        if (landing != null) {
+            landing.mainThreadNanos = System.nanoTime() - landingStart;
+            landing.commit();
+        }
+        
+        if (trace != null) {
+            trace.log("Stage 4: Moving down from {} to {}", downLocation, destination);
         }
+        
+        enterStage(Stage.DESCENT, Math.max(1, downDuration));
+    }
+    
+    /**
+     * Final stage: shows the teleport message and starts cleanup
+     */
+    private void finish() {
+        if (trace != null) {
+            trace.log("Final stage: Cleanup");
+        }
+        
+        // Show teleport message if configured
+        String teleportMessage = settings.getTeleportMessage();
+        if (!teleportMessage.isEmpty()) {
+            player.sendMessage(teleportMessage);
+        }
+        
+        cleanup(null);
     }
     
     /**
      * Handles cleanup of the animation process
      */
     private void cleanup(Exception error) {
+        releaseChunks();
         try {
             if (error != null) {
                 plugin.getLogger().error("Error during teleport animation: " + error.getMessage(), error);
                 
                 // Make sure player reaches destination
-                player.teleport(destination);
-            }
-            
-            // Cancel any ongoing animation
-            if (animationTask != null) {
-                animationTask.cancel();
-                animationTask = null;
+                if (pendingDestination != null) {
+                    destination = pendingDestination;
+                    pendingDestination = null;
+                }
+                teleportPlayer(destination);
+                complete(TeleportResult.FAILED, error);
             }
             
             // Detach camera and remove entity
             entity.detachCamera();
             entity.remove();
+            recordEnd(error == null);
             
-            // Make sure to clean everything up
-            plugin.getServer().getScheduler().scheduleDelayedTask(plugin, () -> {
-                // Second attempt at cleanup to make sure entity is fully removed
-                entity.remove();
-                
-                // IMPORTANT: Remove player from processing set
-                plugin.removeProcessingPlayer(playerId);
-                
-                if (plugin.isDebug()) {
-                    plugin.getLogger().info("Animation cleanup complete for " + player.getName());
-                }
-            }, 5); // Small delay to ensure clean removal
+            if (entity.isCameraOnly()) {
+                reportCameraOnlySavings();
+            }
+            if (trace != null) {
+                reportViewerSavings();
+                reportEntityEncoding();
+            }
+            
+            // Make sure to clean everything up after a small delay to ensure clean removal
+            setStage(Stage.CLEANUP);
+            remaining = CLEANUP_DELAY;
             
         } catch (Exception e) {
             plugin.getLogger().error("Error during cleanup: " + e.getMessage(), e);
-            plugin.removeProcessingPlayer(playerId);
+            recordEnd(false);
+            plugin.getAnimations().unregister(playerId, this);
+            complete(TeleportResult.FAILED, error != null ? error : e);
+            setStage(Stage.DONE);
+        }
+    }
+    
+    /**
+     * Records the end of the animation and everything sent to the player, once
+     */
+    private void recordEnd(boolean completed) {
+        if (!ended) {
+            ended = true;
+            plugin.getTeleportStats().recordAnimationEnded(completed, batch.getPackets(), batch.getBytes());
+        }
+    }
+    
+    /**
+     * Records the bandwidth saved by not driving a real camera entity
+     */
+    private void reportCameraOnlySavings() {
+        TeleportStats stats = plugin.getTeleportStats();
+        stats.recordCameraOnlySavings(entity.getSkippedPackets(), entity.getSkippedBytes());
+        
+        if (trace != null) {
+            trace.log("Camera-only mode saved {} packets (~{} bytes), {} packets (~{} bytes) over {} teleports",
+                    entity.getSkippedPackets(), entity.getSkippedBytes(), stats.getPacketsSaved(),
+                    stats.getBytesSaved(), stats.getCameraOnlyTeleports());
         }
     }
     
+    /**
+     * Traces how many visibility packets were saved by only sending them to viewers
+     */
+    private void reportViewerSavings() {
+        TeleportStats stats = plugin.getTeleportStats();
+        trace.log("Visibility updates sent to {} viewers so far, {} packets saved over broadcasting to every online player",
+                stats.getVisibilityPacketsSent(), stats.getVisibilityPacketsSaved());
+    }
+    
+    /**
+     * Traces the bytes of entity movement sent, next to what absolute snapshots would have cost
+     */
+    private void reportEntityEncoding() {
+        FramePackets packets = entity.getPackets();
+        if (packets.getEntityFrames() == 0) {
+            return;
+        }
+        
+        long absoluteBytes = (long) packets.getEntityFrames() * PacketSizes.MOVE_ENTITY_ABSOLUTE;
+        trace.log("Entity movement: {} frames, ~{} bytes {}, ~{} bytes as absolute", packets.getEntityFrames(),
+                packets.getEntityBytes(), packets.isDeltaEncoding() ? "delta encoded" : "absolute", absoluteBytes);
+    }
+    
     /**
      * Plays the Enderman teleport sound at the specified location
      * @param location The location to play the sound at
@@ -285,6 +836,6 @@ public class TransmissionProcess {
         soundPacket.y = (float) location.y;
         soundPacket.z = (float) location.z;
         soundPacket.data = 0;
-        player.dataPacket(soundPacket);
+        batch.send(soundPacket);
     }
 } 
\ No newline at end of file
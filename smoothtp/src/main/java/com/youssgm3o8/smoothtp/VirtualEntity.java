@@ -1,6 +1,5 @@
 package com.youssgm3o8.smoothtp;
 
-import cn.nukkit.Player;
 import cn.nukkit.entity.data.ByteEntityData;
 import cn.nukkit.entity.data.EntityMetadata;
 import cn.nukkit.entity.data.IntEntityData;
@@ -10,15 +9,10 @@ import cn.nukkit.network.protocol.AddEntityPacket;
 import cn.nukkit.network.protocol.DataPacket;
 import cn.nukkit.network.protocol.EntityEventPacket;
 import cn.nukkit.network.protocol.MobEffectPacket;
-import cn.nukkit.network.protocol.MoveEntityAbsolutePacket;
 import cn.nukkit.network.protocol.MovePlayerPacket;
 import cn.nukkit.network.protocol.RemoveEntityPacket;
 import cn.nukkit.network.protocol.SetEntityDataPacket;
 import cn.nukkit.potion.Effect;
-import cn.nukkit.scheduler.TaskHandler;
-
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Represents a virtual entity used for GTA-style teleportation animations.
@@ -51,33 +45,69 @@ public class VirtualEntity {
     
     // Camera location offset from entity (entity is way below camera view)
     private static final double CAMERA_Y_OFFSET = 10000.0;
+    // Height of a player's eyes above their feet, player positions are sent at eye level
+    private static final double EYE_HEIGHT = 1.62;
 
     private final Main plugin;
-    private final Player player;
+    private final AnimatedPlayer player;
     private final long entityId;
     private Location location;
     private boolean removed = false;
-    private TaskHandler currentMoveTask;
+    // Movement packets reused for every animation frame
+    private final FramePackets packets;
+    // Batch the packets for the player are collected in
+    private final PacketBatch batch;
+    // Whether only the camera is moved, without spawning the entity at all
+    private final boolean cameraOnly;
+    // Trace of the teleport, null unless it was picked for tracing
+    private final Trace trace;
+    // Entity packets skipped in camera-only mode
+    private int skippedPackets;
+    private int skippedBytes;
 
     /**
      * Creates a new virtual entity for the given player
      * @param plugin The plugin instance
      * @param player The player to create the entity for
+     * @param settings The settings of the animation this entity belongs to
+     * @param batch The batch used to send packets to the player
+     * @param trace The trace of the teleport, or null
      */
-    public VirtualEntity(Main plugin, Player player) {
+    public VirtualEntity(Main plugin, AnimatedPlayer player, SmoothTpSettings settings, PacketBatch batch, Trace trace) {
         this.plugin = plugin;
         this.player = player;
         // Use negative entity ID to avoid conflicts with real entities
         this.entityId = -player.getId() - 1000; // Adding an offset to ensure it doesn't conflict
         this.location = player.getLocation();
+        this.packets = new FramePackets(entityId, player.getId(), settings.isDeltaEncoding(),
+                settings.getDeltaSnapshotInterval(), settings.getDeltaMaxJump());
+        this.cameraOnly = settings.isCameraOnly();
+        this.batch = batch;
+        this.trace = trace;
     }
 
     /**
      * Spawns the virtual entity and makes it invisible
      */
     public void spawn() {
-        if (plugin.isDebug()) {
-            plugin.getLogger().info("Spawning virtual entity with ID " + entityId + " for player " + player.getName());
+        VirtualEntityEvent event = VirtualEntityEvent.begin("SPAWN", player, cameraOnly);
+        try {
+            spawnEntity();
+        } finally {
+            if (event != null) {
+                event.commit();
+            }
+        }
+    }
+    
+    private void spawnEntity() {
+        if (cameraOnly) {
+            skip(PacketSizes.ADD_ENTITY + PacketSizes.SET_ENTITY_DATA + PacketSizes.MOB_EFFECT, 3);
+            return;
+        }
+        
+        if (trace != null) {
+            trace.log("Spawning virtual entity with ID {}", entityId);
         }
         
         // Position where we'll place the actual entity - far below the player's view
@@ -97,7 +127,7 @@ public class VirtualEntity {
         spawnPacket.speedZ = 0;
         spawnPacket.yaw = (float) entityLocation.getYaw();
         spawnPacket.pitch = (float) entityLocation.getPitch();
-        player.dataPacket(spawnPacket);
+        batch.send(spawnPacket);
 
         // Make the entity completely invisible
         SetEntityDataPacket dataPacket = new SetEntityDataPacket();
@@ -115,7 +145,7 @@ public class VirtualEntity {
                 .putInt(DATA_HEALTH, 0);                   // Set health to 0 (makes some entities invisible)
         
         dataPacket.metadata = metadata;
-        player.dataPacket(dataPacket);
+        batch.send(dataPacket);
         
         // Apply invisibility potion effect (Infinite duration: 1000000 ticks)
         applyInvisibilityEffect(true);
@@ -138,7 +168,7 @@ public class VirtualEntity {
                 MobEffectPacket.EVENT_ADD : 
                 MobEffectPacket.EVENT_REMOVE;
                 
-        player.dataPacket(effectPacket);
+        batch.send(effectPacket);
     }
 
     /**
@@ -151,149 +181,50 @@ public class VirtualEntity {
         // Store the actual camera location
         this.location = location.clone(); 
         
-        // The entity itself is positioned below the camera
-        Location entityLocation = location.clone();
-        entityLocation.y -= CAMERA_Y_OFFSET;
-
-        // Move the entity below the view
-        MoveEntityAbsolutePacket packet = new MoveEntityAbsolutePacket();
-        packet.eid = entityId;
-        packet.x = (float) entityLocation.getX();
-        packet.y = (float) entityLocation.getY();
-        packet.z = (float) entityLocation.getZ();
-        packet.yaw = (float) entityLocation.getYaw();
-        packet.pitch = (float) entityLocation.getPitch();
-        packet.headYaw = (float) entityLocation.getYaw();
-        packet.onGround = false;
-        
-        player.dataPacket(packet);
-        
-        // Also update the camera instantly to the actual view position
-        updateCamera(location);
+        moveTo(location.x, location.y, location.z, (float) location.yaw, (float) location.pitch);
     }
-
+    
     /**
-     * Smoothly moves the entity to a target location over a specified duration
-     * @param to The target location
-     * @param duration The duration in ticks
-     * @return The task handling the movement
+     * Plays back a single frame of a camera track, moving both the entity and the camera
+     * @param track The precomputed camera track
+     * @param frame The index of the frame to play
      */
-    public TaskHandler move(Location to, int duration) {
-        if (removed) return null;
-        
-        if (plugin.isDebug()) {
-            plugin.getLogger().info("Moving entity from " + location.toString() + " to " + to.toString() + " over " + duration + " ticks");
-        }
-        
-        // Cancel any existing move task
-        if (currentMoveTask != null && !currentMoveTask.isCancelled()) {
-            currentMoveTask.cancel();
-        }
-        
-        // Make sure duration is at least 1 tick
-        final int finalDuration = Math.max(1, duration);
-        
-        // Clone locations to avoid reference issues - these are camera positions
-        final Location startLoc = location.clone();
-        final Location endLoc = to.clone();
-        
-        AtomicInteger durationCounter = new AtomicInteger(finalDuration);
-        AtomicReference<TaskHandler> taskRef = new AtomicReference<>();
-
-        // Create and store the task
-        TaskHandler task = plugin.getServer().getScheduler().scheduleRepeatingTask(plugin, () -> {
-            if (removed || !player.isOnline()) {
-                if (taskRef.get() != null) {
-                    taskRef.get().cancel();
-                }
-                return;
-            }
-            
-            try {
-                // Calculate raw progress (0.0 to 1.0)
-                float rawProgress = 1.0f - (float)durationCounter.get() / finalDuration;
-                
-                // Apply easing function for smoother movement with friction
-                // Using cubic for extra friction
-                float easedProgress = easeInOutCubic(rawProgress);
-                
-                // Interpolate between start and end positions
-                double x = startLoc.x + (endLoc.x - startLoc.x) * easedProgress;
-                double y = startLoc.y + (endLoc.y - startLoc.y) * easedProgress;
-                double z = startLoc.z + (endLoc.z - startLoc.z) * easedProgress;
-                
-                // Interpolate rotation
-                double yaw = startLoc.yaw + (endLoc.yaw - startLoc.yaw) * easedProgress;
-                double pitch = startLoc.pitch + (endLoc.pitch - startLoc.pitch) * easedProgress;
-                
-                // Create interpolated camera location
-                Location cameraPos = new Location(
-                    x, y, z,
-                    yaw, pitch,
-                    startLoc.level  // Keep the same level
-                );
-                
-                // Create entity location (far below camera)
-                Location entityPos = cameraPos.clone();
-                entityPos.y -= CAMERA_Y_OFFSET;
-                
-                // Update entity position (which is far below the camera)
-                MoveEntityAbsolutePacket packet = new MoveEntityAbsolutePacket();
-                packet.eid = entityId;
-                packet.x = (float) entityPos.x;
-                packet.y = (float) entityPos.y;
-                packet.z = (float) entityPos.z;
-                packet.yaw = (float) entityPos.yaw;
-                packet.pitch = (float) entityPos.pitch;
-                packet.headYaw = (float) entityPos.yaw;
-                packet.onGround = false;
-                
-                player.dataPacket(packet);
-                
-                // Update local position (camera position)
-                location = cameraPos;
-                
-                // Update camera position for player to follow entity
-                updateCamera(cameraPos);
-                
-                // End task when duration is complete
-                if (durationCounter.decrementAndGet() <= 0) {
-                    // Make sure we reach the exact destination
-                    teleport(endLoc);
-                    
-                    if (taskRef.get() != null) {
-                        taskRef.get().cancel();
-                    }
-                }
-            } catch (Exception e) {
-                plugin.getLogger().error("Error moving entity: " + e.getMessage(), e);
-                if (taskRef.get() != null) {
-                    taskRef.get().cancel();
-                }
-            }
-        }, 1);
+    public void playFrame(CameraTrack track, int frame) {
+        if (removed) return;
         
-        taskRef.set(task);
-        currentMoveTask = task;
-        return task;
+        moveTo(track.getX(frame), track.getY(frame), track.getZ(frame), track.getYaw(frame), track.getPitch(frame));
+    }
+    
+    /**
+     * Plays back a single frame of a camera track, moving only the camera
+     * @param track The precomputed camera track
+     * @param frame The index of the frame to play
+     */
+    public void holdFrame(CameraTrack track, int frame) {
+        updateCamera(track.getX(frame), track.getY(frame), track.getZ(frame), track.getYaw(frame), track.getPitch(frame));
     }
     
     /**
-     * Easing function for smooth acceleration and deceleration
-     * @param t Progress value from 0.0 to 1.0
-     * @return Eased value
+     * Chooses whether frames snap the camera into place or let the client interpolate
+     * @param interpolated true when frames are sent less than once per tick
      */
-    private float easeInOutQuad(float t) {
-        return t < 0.5f ? 2.0f * t * t : 1.0f - (float)Math.pow(-2.0f * t + 2.0f, 2) / 2.0f;
+    public void setInterpolated(boolean interpolated) {
+        packets.setInterpolated(interpolated);
     }
     
     /**
-     * Easing function with even more friction
-     * @param t Progress value from 0.0 to 1.0
-     * @return Eased value with extra friction
+     * Moves the entity below the given camera position and the camera onto it
      */
-    private float easeInOutCubic(float t) {
-        return t < 0.5f ? 4.0f * t * t * t : 1.0f - (float)Math.pow(-2.0f * t + 2.0f, 3) / 2.0f;
+    private void moveTo(double x, double y, double z, float yaw, float pitch) {
+        // The entity itself is positioned below the camera
+        if (cameraOnly) {
+            skip(PacketSizes.MOVE_ENTITY_ABSOLUTE, 1);
+        } else {
+            batch.send(packets.entityMove(x, y - CAMERA_Y_OFFSET, z, yaw, pitch));
+        }
+        
+        // Also update the camera instantly to the actual view position
+        updateCamera(x, y, z, yaw, pitch);
     }
     
     /**
@@ -322,7 +253,16 @@ public class VirtualEntity {
         packet.headYaw = (float) loc.getYaw();
         packet.mode = MovePlayerPacket.MODE_TELEPORT;
         
-        player.dataPacket(packet);
+        batch.send(packet);
+    }
+    
+    /**
+     * Updates the player's camera to a specific position, reusing the frame packet
+     */
+    private void updateCamera(double x, double y, double z, float yaw, float pitch) {
+        if (removed) return;
+        
+        batch.send(packets.cameraMove(x, y, z, yaw, pitch));
     }
     
     /**
@@ -331,8 +271,8 @@ public class VirtualEntity {
     public void attachCamera() {
         if (removed) return;
         
-        if (plugin.isDebug()) {
-            plugin.getLogger().info("Attaching camera for " + player.getName() + " to virtual entity");
+        if (trace != null) {
+            trace.log("Attaching camera to virtual entity");
         }
         
         // Since Nukkit doesn't have the camera API, we'll simulate it
@@ -340,46 +280,78 @@ public class VirtualEntity {
         updateCamera();
         
         // Make player temporarily invisible to others
-        SetEntityDataPacket packet = new SetEntityDataPacket();
-        packet.eid = player.getId();
-        
-        // Create metadata for the player
-        EntityMetadata metadata = new EntityMetadata()
-                .putByte(DATA_FLAGS, INVISIBLE_FLAG);
-        packet.metadata = metadata;
-        
-        broadcastToOthers(packet);
+        broadcastToOthers(visibilityPacket(player.getId(), false));
     }
     
     /**
      * Restores the player's normal camera view
      */
     public void detachCamera() {
-        if (plugin.isDebug()) {
-            plugin.getLogger().info("Detaching camera for " + player.getName());
+        if (trace != null) {
+            trace.log("Detaching camera");
         }
         
         // Make player visible again
+        broadcastToOthers(visibilityPacket(player.getId(), true));
+    }
+    
+    /**
+     * Snaps the player's camera back onto the player, for an animation stopped before landing
+     */
+    public void resetCamera() {
+        if (!player.isOnline()) {
+            return;
+        }
+        
+        if (trace != null) {
+            trace.log("Resetting camera to {}", player.getLocation());
+        }
+        
+        batch.send(cameraResetPacket(player.getId(), player.getLocation()));
+    }
+    
+    /**
+     * Creates the packet putting a player's camera back where the server has the player
+     * @param playerId The runtime entity ID of the player
+     * @param location The player's actual location
+     * @return The movement packet to send to the player
+     */
+    static MovePlayerPacket cameraResetPacket(long playerId, Location location) {
+        MovePlayerPacket packet = new MovePlayerPacket();
+        packet.eid = playerId;
+        packet.x = (float) location.getX();
+        packet.y = (float) (location.getY() + EYE_HEIGHT);
+        packet.z = (float) location.getZ();
+        packet.yaw = (float) location.getYaw();
+        packet.pitch = (float) location.getPitch();
+        packet.headYaw = (float) location.getYaw();
+        packet.mode = MovePlayerPacket.MODE_RESET;
+        return packet;
+    }
+    
+    /**
+     * Creates the packet hiding a player from others while their camera is away, or showing them again
+     * @param playerId The runtime entity ID of the animated player
+     * @param visible false to hide the player
+     * @return The metadata packet to send to the player's viewers
+     */
+    static SetEntityDataPacket visibilityPacket(long playerId, boolean visible) {
         SetEntityDataPacket packet = new SetEntityDataPacket();
-        packet.eid = player.getId();
+        packet.eid = playerId;
         
         // Create metadata for the player
-        EntityMetadata metadata = new EntityMetadata()
-                .putByte(DATA_FLAGS, (byte) 0x00);
-        packet.metadata = metadata;
-        
-        broadcastToOthers(packet);
+        packet.metadata = new EntityMetadata()
+                .putByte(DATA_FLAGS, visible ? (byte) 0x00 : INVISIBLE_FLAG);
+        return packet;
     }
     
     /**
-     * Broadcasts a packet to all players except the owner of this entity
+     * Sends a packet to the players that can currently see the owner of this entity.
+     * Players that don't have the owner spawned never render it, so they are skipped.
      */
     private void broadcastToOthers(DataPacket packet) {
-        for (Player p : plugin.getServer().getOnlinePlayers().values()) {
-            if (!p.equals(player)) {
-                p.dataPacket(packet);
-            }
-        }
+        int viewers = player.broadcastToViewers(packet);
+        plugin.getTeleportStats().recordViewerBroadcast(viewers, Math.max(0, player.getOtherPlayers() - viewers));
     }
     
     /**
@@ -388,16 +360,26 @@ public class VirtualEntity {
     public void remove() {
         if (removed) return;
         
-        if (plugin.isDebug()) {
-            plugin.getLogger().info("Removing virtual entity for " + player.getName());
+        VirtualEntityEvent event = VirtualEntityEvent.begin("REMOVE", player, cameraOnly);
+        try {
+            removeEntity();
+        } finally {
+            if (event != null) {
+                event.commit();
+            }
+        }
+    }
+    
+    private void removeEntity() {
+        if (trace != null) {
+            trace.log("Removing virtual entity");
         }
         
         removed = true;
         
-        // Cancel any ongoing movement
-        if (currentMoveTask != null && !currentMoveTask.isCancelled()) {
-            currentMoveTask.cancel();
-            currentMoveTask = null;
+        if (cameraOnly) {
+            skip(PacketSizes.MOB_EFFECT + PacketSizes.REMOVE_ENTITY, 2);
+            return;
         }
         
         // Remove the invisibility effect
@@ -406,6 +388,42 @@ public class VirtualEntity {
         // Send remove packet
         RemoveEntityPacket packet = new RemoveEntityPacket();
         packet.eid = entityId;
-        player.dataPacket(packet);
+        batch.send(packet);
+    }
+    
+    /**
+     * Records entity packets that were not sent because of camera-only mode
+     */
+    private void skip(int bytes, int count) {
+        skippedPackets += count;
+        skippedBytes += bytes;
+    }
+    
+    /**
+     * @return true if this entity only drives the camera
+     */
+    public boolean isCameraOnly() {
+        return cameraOnly;
+    }
+    
+    /**
+     * @return The reusable frame packets, which also track the entity movement sent
+     */
+    public FramePackets getPackets() {
+        return packets;
+    }
+    
+    /**
+     * @return The number of entity packets skipped in camera-only mode
+     */
+    public int getSkippedPackets() {
+        return skippedPackets;
+    }
+    
+    /**
+     * @return The estimated number of bytes skipped in camera-only mode
+     */
+    public int getSkippedBytes() {
+        return skippedBytes;
     }
-} 
\ No newline at end of file
+}
\ No newline at end of file
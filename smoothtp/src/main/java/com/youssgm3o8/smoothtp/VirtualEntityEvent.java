@@ -0,0 +1,48 @@
+package com.youssgm3o8.smoothtp;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event for the spawn or removal of a virtual camera entity.
+ * The event lasts as long as the call took on the main thread.
+ */
+@Name("com.youssgm3o8.smoothtp.VirtualEntity")
+@Label("Virtual Entity")
+@Category({"SmoothTP", "Teleport"})
+@Description("Spawn or removal of the virtual entity driving a player's camera")
+@StackTrace(false)
+public class VirtualEntityEvent extends Event {
+    @Label("Player")
+    String player;
+
+    @Label("Action")
+    String action;
+
+    @Label("Camera Only")
+    @Description("Whether only the camera is moved, so no entity packets were sent")
+    boolean cameraOnly;
+
+    /**
+     * Starts recording an action, unless the event is not being recorded
+     * @param action SPAWN or REMOVE
+     * @param player The player owning the entity
+     * @param cameraOnly Whether the entity only exists as a camera
+     * @return The started event, or null when it is not recorded
+     */
+    static VirtualEntityEvent begin(String action, AnimatedPlayer player, boolean cameraOnly) {
+        VirtualEntityEvent event = new VirtualEntityEvent();
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.action = action;
+        event.player = player.getName();
+        event.cameraOnly = cameraOnly;
+        event.begin();
+        return event;
+    }
+}
@@ -0,0 +1,149 @@
+package com.youssgm3o8.smoothtp;
+
+import cn.nukkit.event.player.PlayerTeleportEvent.TeleportCause;
+import cn.nukkit.level.Location;
+import cn.nukkit.network.protocol.DataPacket;
+import cn.nukkit.utils.Config;
+import com.sun.management.ThreadMXBean;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * A steady-state animation tick must not allocate: from the ticker through the process
+ * and its virtual entity down to the batch handed to the player, everything is reused.
+ */
+class AnimationAllocationTest {
+    // Long enough that the pan is still running after the warm-up and the measured ticks
+    private static final int PAN_TICKS = 400;
+    private static final int WARMUP_TICKS = 100;
+    private static final int MEASURED_TICKS = 200;
+
+    /**
+     * Only counts what it is sent, where a real player would encode it
+     */
+    private static final class CountingPlayer implements AnimatedPlayer {
+        private final UUID uniqueId = new UUID(0L, 1L);
+        private final Location location;
+        int packets;
+
+        CountingPlayer(Location location) {
+            this.location = location;
+        }
+
+        @Override
+        public long getId() {
+            return 1L;
+        }
+
+        @Override
+        public UUID getUniqueId() {
+            return uniqueId;
+        }
+
+        @Override
+        public String getName() {
+            return "Player1";
+        }
+
+        @Override
+        public Location getLocation() {
+            return location.clone();
+        }
+
+        @Override
+        public boolean isOnline() {
+            return true;
+        }
+
+        @Override
+        public int getPing() {
+            return 0;
+        }
+
+        @Override
+        public void dataPacket(DataPacket packet) {
+            packets++;
+        }
+
+        @Override
+        public void batchPackets(DataPacket[] packets) {
+            this.packets += packets.length;
+        }
+
+        @Override
+        public int broadcastToViewers(DataPacket packet) {
+            return 0;
+        }
+
+        @Override
+        public int getOtherPlayers() {
+            return 0;
+        }
+
+        @Override
+        public boolean teleport(Location to) {
+            return true;
+        }
+
+        @Override
+        public void protectFromFall(int ticks) {
+        }
+
+        @Override
+        public void sendTitle(String title, String subtitle, int fadeIn, int stay, int fadeOut) {
+        }
+
+        @Override
+        public void sendMessage(String message) {
+        }
+
+        @Override
+        public void callCompleteEvent(Location destination, TeleportResult result) {
+        }
+    }
+
+    @Test
+    void panTicksDoNotAllocate() {
+        ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+
+        Config config = new Config(Config.YAML);
+        config.set("gta.up-duration", 10);
+        config.set("gta.fade-in-duration", 5);
+        config.set("gta.stay-duration", PAN_TICKS);
+        config.set("play-sound", false);
+        Main plugin = HeadlessPlugin.start(HeadlessPlugin.settings(config), new VirtualScheduler(20.0));
+
+        Location from = new Location(0.5, 64.0, 0.5, 0.0, 0.0, null);
+        CountingPlayer player = new CountingPlayer(from);
+        assertTrue(plugin.requestTeleport(player, from, new Location(500.5, 70.0, 500.5, 0.0, 0.0, null),
+                TeleportCause.PLUGIN));
+
+        // The ticker is run directly, the virtual scheduler allocates an entry for every run.
+        // The warm-up climbs, holds, and plays the first frames of the pan
+        AnimationTicker ticker = plugin.getAnimationTicker();
+        for (int tick = 0; tick < WARMUP_TICKS; tick++) {
+            ticker.run();
+        }
+        threads.getCurrentThreadAllocatedBytes();
+
+        int sent = player.packets;
+        long before = threads.getCurrentThreadAllocatedBytes();
+        for (int tick = 0; tick < MEASURED_TICKS; tick++) {
+            ticker.run();
+        }
+        long allocated = threads.getCurrentThreadAllocatedBytes() - before;
+
+        // Still panning, and every tick sent its frame
+        assertNotNull(plugin.getAnimations().getProcess(player.getUniqueId()));
+        assertTrue(player.packets - sent >= MEASURED_TICKS, "packets sent while measuring");
+        assertEquals(0L, allocated, "bytes allocated by " + MEASURED_TICKS + " pan ticks");
+    }
+}
@@ -0,0 +1,61 @@
+package com.youssgm3o8.smoothtp;
+
+import cn.nukkit.level.Level;
+import cn.nukkit.level.Location;
+import cn.nukkit.utils.Config;
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/**
+ * An animation that fails while ticking must not keep its players.
+ */
+class AnimationTickerTest {
+
+    /**
+     * Throws from its first tick, like an animation hitting a bug
+     */
+    private static final class FailingAnimation implements Animation {
+        UUID cancelled;
+
+        @Override
+        public boolean tick() {
+            throw new IllegalStateException("broken animation");
+        }
+
+        @Override
+        public void cancel(UUID playerId) {
+            cancelled = playerId;
+        }
+
+        @Override
+        public boolean involves(Level level) {
+            return false;
+        }
+    }
+
+    @Test
+    void failingAnimationReleasesItsPlayer() {
+        VirtualScheduler scheduler = new VirtualScheduler(20.0);
+        Main plugin = HeadlessPlugin.start(HeadlessPlugin.settings(new Config(Config.YAML)), scheduler);
+        SimulatedPlayer player = new SimulatedPlayer(plugin, 1, new Location(0.5, 64.0, 0.5, 0.0, 0.0, null),
+                0, 0, 0, new ByteCountingSink());
+
+        FailingAnimation animation = new FailingAnimation();
+        plugin.getAnimations().register(player.getUniqueId(), animation);
+        plugin.getAnimationTicker().add(animation);
+        scheduler.tick();
+
+        assertEquals(player.getUniqueId(), animation.cancelled);
+        assertFalse(plugin.getAnimations().isTeleporting(player.getUniqueId()));
+        assertEquals(0, plugin.getAnimationTicker().size());
+
+        // The player can be teleported again rather than retargeting the dead animation
+        player.teleport(new Location(500.5, 70.0, 500.5, 0.0, 0.0, null));
+        assertNotNull(plugin.getAnimations().getProcess(player.getUniqueId()));
+    }
+}
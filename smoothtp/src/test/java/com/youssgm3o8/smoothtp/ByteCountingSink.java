@@ -0,0 +1,66 @@
+package com.youssgm3o8.smoothtp;
+
+import cn.nukkit.network.protocol.DataPacket;
+
+/**
+ * Stands in for a player's connection in tests and benchmarks: packets are encoded the way
+ * Player.dataPacket encodes them, then only their size is kept.
+ */
+public class ByteCountingSink {
+    private long packets;
+    private long bytes;
+
+    /**
+     * Encodes a packet and counts its bytes
+     * @param packet The packet to send
+     */
+    public void send(DataPacket packet) {
+        encode(packet);
+        packets++;
+        bytes += packet.getCount();
+    }
+
+    /**
+     * Encodes packets sent as one batch and counts them as a single network packet.
+     * The bytes are counted before the batch is compressed.
+     * @param batch The packets of the batch
+     */
+    public void sendBatch(DataPacket[] batch) {
+        for (DataPacket packet : batch) {
+            encode(packet);
+            bytes += packet.getCount();
+        }
+        packets++;
+    }
+
+    /**
+     * Encodes a packet once and counts a copy of it for each receiver
+     * @param packet The packet to send
+     * @param receivers The number of players receiving it
+     */
+    public void broadcast(DataPacket packet, int receivers) {
+        encode(packet);
+        packets += receivers;
+        bytes += (long) receivers * packet.getCount();
+    }
+
+    private static void encode(DataPacket packet) {
+        if (!packet.isEncoded) {
+            packet.encode();
+            packet.isEncoded = true;
+        }
+    }
+
+    public long getPackets() {
+        return packets;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    public void reset() {
+        packets = 0;
+        bytes = 0;
+    }
+}
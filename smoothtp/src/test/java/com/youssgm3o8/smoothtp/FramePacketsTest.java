@@ -0,0 +1,56 @@
+package com.youssgm3o8.smoothtp;
+
+import com.sun.management.ThreadMXBean;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Playing frames must not allocate: the movement packets are updated in place every tick.
+ */
+class FramePacketsTest {
+    private static final int FRAMES = 10_000;
+
+    @Test
+    void absoluteFramesDoNotAllocate() {
+        assertNoAllocation(new FramePackets(1L, 2L));
+    }
+
+    @Test
+    void deltaFramesDoNotAllocate() {
+        assertNoAllocation(new FramePackets(1L, 2L, true, 20, 8.0));
+    }
+
+    private static void assertNoAllocation(FramePackets packets) {
+        ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+
+        // Loads everything a frame touches, so only the frames themselves are measured
+        play(packets);
+        threads.getCurrentThreadAllocatedBytes();
+
+        long before = threads.getCurrentThreadAllocatedBytes();
+        play(packets);
+        long allocated = threads.getCurrentThreadAllocatedBytes() - before;
+
+        assertEquals(0L, allocated, "bytes allocated by " + FRAMES + " frames");
+    }
+
+    /**
+     * Plays a camera flight with small steps, and a jump now and then to force absolute snapshots
+     */
+    private static void play(FramePackets packets) {
+        for (int frame = 0; frame < FRAMES; frame++) {
+            double x = frame * 0.25 + (frame % 500 == 0 ? 100.0 : 0.0);
+            double y = 64.0 + Math.sin(frame * 0.01) * 10.0;
+            double z = frame * 0.1;
+            float yaw = (frame * 3) % 360;
+            float pitch = (frame % 90) - 45;
+            packets.entityMove(x, y, z, yaw, pitch);
+            packets.cameraMove(x, y + 1.62, z, yaw, pitch);
+        }
+    }
+}
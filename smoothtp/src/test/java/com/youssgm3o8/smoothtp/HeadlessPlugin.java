@@ -0,0 +1,53 @@
+package com.youssgm3o8.smoothtp;
+
+import cn.nukkit.plugin.PluginDescription;
+import cn.nukkit.utils.Config;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Starts the real plugin without a server, for tests, the load simulation and benchmarks.
+ * Only the animation machinery runs: settings, admission, the shared ticker on the given
+ * scheduler, and animations driven through {@link AnimatedPlayer}s. Nothing is registered
+ * with a server, so listeners are called directly and levels are left out.
+ */
+final class HeadlessPlugin {
+    private static final String DESCRIPTION = "name: SmoothTP\n"
+            + "version: headless\n"
+            + "main: " + Main.class.getName() + "\n"
+            + "api: [\"1.0.0\"]\n";
+
+    private HeadlessPlugin() {
+    }
+
+    /**
+     * Creates and starts a plugin instance
+     * @param settings The settings to run with
+     * @param scheduler The scheduler driving the animation ticker
+     * @return The started plugin
+     */
+    static Main start(SmoothTpSettings settings, AnimationScheduler scheduler) {
+        Main plugin = new Main();
+        // No loader, server or plugin file, the logger only needs the description
+        plugin.init(null, null, new PluginDescription(DESCRIPTION), new File("target", "headless"), null);
+        plugin.startAnimations(settings, scheduler);
+        return plugin;
+    }
+
+    /**
+     * Reads settings from a config, with chunk prewarming turned off since there are no levels to load
+     * @param config The config, already holding any overrides
+     * @return The settings, after printing any warning
+     */
+    static SmoothTpSettings settings(Config config) {
+        config.set("performance.prewarm-chunks", false);
+        List<String> warnings = new ArrayList<>();
+        SmoothTpSettings settings = new SmoothTpSettings(config, warnings);
+        for (String warning : warnings) {
+            System.out.println("Config warning: " + warning);
+        }
+        return settings;
+    }
+}
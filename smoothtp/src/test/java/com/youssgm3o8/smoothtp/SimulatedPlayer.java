@@ -0,0 +1,198 @@
+package com.youssgm3o8.smoothtp;
+
+import cn.nukkit.event.player.PlayerTeleportEvent.TeleportCause;
+import cn.nukkit.level.Location;
+import cn.nukkit.network.protocol.DataPacket;
+import cn.nukkit.network.protocol.MobEffectPacket;
+import cn.nukkit.network.protocol.MovePlayerPacket;
+import cn.nukkit.network.protocol.SetTitlePacket;
+import cn.nukkit.network.protocol.TextPacket;
+
+import java.util.UUID;
+
+/**
+ * A player of the headless server. Every packet sent to it is encoded like
+ * Player.dataPacket would, then only counted, and its teleports go through
+ * the plugin's teleport listener like a real player's teleport event.
+ */
+final class SimulatedPlayer implements AnimatedPlayer {
+    // Damage resistance, the effect the landing protects players with
+    private static final int EFFECT_DAMAGE_RESISTANCE = 11;
+
+    private final Main plugin;
+    private final long id;
+    private final UUID uniqueId;
+    private final String name;
+    private final ByteCountingSink network;
+    // Players in view, who receive the visibility and teleport packets of this one
+    private final int viewers;
+    // Everyone else online
+    private final int others;
+    private final int ping;
+    private Location location;
+    private boolean online = true;
+    private int completed;
+
+    /**
+     * @param plugin The plugin whose teleport listener sees this player's teleports
+     * @param id The runtime entity ID of the player
+     * @param location Where the player stands
+     * @param viewers How many players see this one
+     * @param others How many other players are online
+     * @param ping The latency of the player's connection, in milliseconds
+     * @param network Counts everything sent by the headless server
+     */
+    SimulatedPlayer(Main plugin, long id, Location location, int viewers, int others, int ping, ByteCountingSink network) {
+        this.plugin = plugin;
+        this.id = id;
+        this.uniqueId = new UUID(0L, id);
+        this.name = "Player" + id;
+        this.location = location;
+        this.viewers = viewers;
+        this.others = others;
+        this.ping = ping;
+        this.network = network;
+    }
+
+    @Override
+    public long getId() {
+        return id;
+    }
+
+    @Override
+    public UUID getUniqueId() {
+        return uniqueId;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Location getLocation() {
+        return location.clone();
+    }
+
+    @Override
+    public boolean isOnline() {
+        return online;
+    }
+
+    @Override
+    public int getPing() {
+        return ping;
+    }
+
+    @Override
+    public void dataPacket(DataPacket packet) {
+        network.send(packet);
+    }
+
+    @Override
+    public void batchPackets(DataPacket[] packets) {
+        network.sendBatch(packets);
+    }
+
+    @Override
+    public int broadcastToViewers(DataPacket packet) {
+        network.broadcast(packet, viewers);
+        return viewers;
+    }
+
+    @Override
+    public int getOtherPlayers() {
+        return others;
+    }
+
+    /**
+     * Teleports the player like the server would: the teleport listener may take it over,
+     * otherwise the player moves and everyone in view is told
+     */
+    @Override
+    public boolean teleport(Location to) {
+        if (!online || plugin.requestTeleport(this, location, to, TeleportCause.PLUGIN)) {
+            return false;
+        }
+
+        MovePlayerPacket move = new MovePlayerPacket();
+        move.eid = id;
+        move.x = (float) to.x;
+        move.y = (float) to.y;
+        move.z = (float) to.z;
+        move.yaw = (float) to.yaw;
+        move.pitch = (float) to.pitch;
+        move.headYaw = (float) to.yaw;
+        move.mode = MovePlayerPacket.MODE_TELEPORT;
+        network.send(move);
+        network.broadcast(move, viewers);
+
+        location = to.clone();
+        return true;
+    }
+
+    @Override
+    public void protectFromFall(int ticks) {
+        MobEffectPacket effect = new MobEffectPacket();
+        effect.eid = id;
+        effect.eventId = MobEffectPacket.EVENT_ADD;
+        effect.effectId = EFFECT_DAMAGE_RESISTANCE;
+        effect.amplifier = 4;
+        effect.duration = ticks;
+        effect.particles = false;
+        network.send(effect);
+    }
+
+    /**
+     * Sends the same packets as Player.sendTitle: the timings, the subtitle if any, then the title
+     */
+    @Override
+    public void sendTitle(String title, String subtitle, int fadeIn, int stay, int fadeOut) {
+        SetTitlePacket times = new SetTitlePacket();
+        times.type = SetTitlePacket.TYPE_ANIMATION_TIMES;
+        times.fadeInTime = fadeIn;
+        times.stayTime = stay;
+        times.fadeOutTime = fadeOut;
+        network.send(times);
+
+        if (!subtitle.isEmpty()) {
+            network.send(title(SetTitlePacket.TYPE_SUBTITLE, subtitle));
+        }
+        network.send(title(SetTitlePacket.TYPE_TITLE, title));
+    }
+
+    private static SetTitlePacket title(int type, String text) {
+        SetTitlePacket packet = new SetTitlePacket();
+        packet.type = type;
+        packet.text = text;
+        return packet;
+    }
+
+    @Override
+    public void sendMessage(String message) {
+        TextPacket packet = new TextPacket();
+        packet.type = TextPacket.TYPE_RAW;
+        packet.message = message;
+        network.send(packet);
+    }
+
+    @Override
+    public void callCompleteEvent(Location destination, TeleportResult result) {
+        completed++;
+    }
+
+    /**
+     * Disconnects the player, which releases their animation like the quit listener
+     */
+    void quit() {
+        online = false;
+        plugin.getAnimations().cancel(uniqueId);
+    }
+
+    /**
+     * @return The number of teleports of this player that were completed or failed
+     */
+    int getCompleted() {
+        return completed;
+    }
+}
@@ -0,0 +1,129 @@
+package com.youssgm3o8.smoothtp;
+
+import java.util.PriorityQueue;
+
+/**
+ * A deterministic stand-in for the server scheduler, advanced one virtual tick at a time.
+ * Tasks due on the same tick run in the order they were scheduled, so a simulation
+ * with the same seed always produces the same packets. The plugin schedules its
+ * animation ticker here through {@link AnimationScheduler}.
+ */
+final class VirtualScheduler implements AnimationScheduler {
+    private final PriorityQueue<Entry> queue = new PriorityQueue<>();
+    private final double ticksPerSecond;
+    private long sequence;
+    private int currentTick;
+    private int lastDue;
+
+    private static final class Entry implements Comparable<Entry> {
+        final int tick;
+        final long sequence;
+        final Handle handle;
+
+        Entry(int tick, long sequence, Handle handle) {
+            this.tick = tick;
+            this.sequence = sequence;
+            this.handle = handle;
+        }
+
+        @Override
+        public int compareTo(Entry other) {
+            if (tick != other.tick) {
+                return Integer.compare(tick, other.tick);
+            }
+            return Long.compare(sequence, other.sequence);
+        }
+    }
+
+    /**
+     * A scheduled task, shared by every run of a repeating task
+     */
+    private static final class Handle implements Task {
+        final Runnable task;
+        final int period;
+        boolean cancelled;
+
+        Handle(Runnable task, int period) {
+            this.task = task;
+            this.period = period;
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+        }
+    }
+
+    /**
+     * @param ticksPerSecond The TPS reported to the plugin
+     */
+    VirtualScheduler(double ticksPerSecond) {
+        this.ticksPerSecond = ticksPerSecond;
+    }
+
+    /**
+     * Runs a task once after the given number of ticks
+     * @param delay Ticks from now, at least 1
+     * @param task The task to run
+     */
+    void schedule(int delay, Runnable task) {
+        queue.add(new Entry(currentTick + Math.max(1, delay), sequence++, new Handle(task, 0)));
+    }
+
+    @Override
+    public Task scheduleRepeating(Runnable task, int period) {
+        Handle handle = new Handle(task, Math.max(1, period));
+        queue.add(new Entry(currentTick + 1, sequence++, handle));
+        return handle;
+    }
+
+    @Override
+    public double getTicksPerSecond() {
+        return ticksPerSecond;
+    }
+
+    /**
+     * Advances to the next tick and runs every task due on it
+     */
+    void tick() {
+        currentTick++;
+        int due = 0;
+        while (!queue.isEmpty() && queue.peek().tick <= currentTick) {
+            Entry entry = queue.poll();
+            Handle handle = entry.handle;
+            if (handle.cancelled) {
+                continue;
+            }
+            due++;
+            handle.task.run();
+            if (handle.period > 0 && !handle.cancelled) {
+                queue.add(new Entry(currentTick + handle.period, sequence++, handle));
+            }
+        }
+        lastDue = due;
+    }
+
+    /**
+     * @return The number of one-off tasks still waiting to run
+     */
+    int getPendingTasks() {
+        int pending = 0;
+        for (Entry entry : queue) {
+            if (entry.handle.period == 0) {
+                pending++;
+            }
+        }
+        return pending;
+    }
+
+    /**
+     * @return The number of tasks the scheduler had to run on the last tick
+     */
+    int getQueueDepth() {
+        return lastDue;
+    }
+
+    int getCurrentTick() {
+        return currentTick;
+    }
+}